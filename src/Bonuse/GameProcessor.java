@@ -2,59 +2,115 @@ package Bonuse;
 
 import Controller.GameMasterController;
 import Model.ChessBoard;
-import Model.ChessMove;
+import Model.PackedGame;
 import Parser.ChessMovesParser;
+import Parser.GameDeduplicator;
 import Parser.PGNParser;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.*;
 
 public class GameProcessor {
+    // Games evaluated ahead of the one whose log is written next, per thread
+    private static final int IN_FLIGHT_PER_THREAD = 4;
 
 
     public static void processGames(List<String> filePaths, int nThreads)
             throws InterruptedException, ExecutionException {
+        processGames(filePaths, nThreads, null);
+    }
+
+    /**
+     * Same as processGames, but a game already seen in any of the files is only evaluated once.
+     * With files parsed concurrently, which of the copies is kept depends on timing.
+     */
+    public static void processGames(List<String> filePaths, int nThreads, GameDeduplicator deduplicator)
+            throws InterruptedException, ExecutionException {
 
         ExecutorService parsersPoolService = Executors.newFixedThreadPool(nThreads);
-                
-        List<Future<List<List<String>>>> allGames = new ArrayList<>();
-        for (String filePath : filePaths) {
-            allGames.add(parsersPoolService.submit(() -> {
-                PGNParser p = new PGNParser();
-                p.parsePGNFile(filePath);
-                return p.getGameList();
-            }));
-        }
-            
-        List<List<String>> allFlattenedGames = new ArrayList<>();
-        for (Future<List<List<String>>> file : allGames) {
-            allFlattenedGames.addAll(file.get());
-        }
-                
-        List<Future<List<ChessMove>>> chessMoves = new ArrayList<>();
-        for (List<String> game : allFlattenedGames) {
-            chessMoves.add(
-                    parsersPoolService.submit(() ->
-                            ChessMovesParser.parse(game)
-                    ));
-        }
-                
-        parsersPoolService.shutdown();
-
-        GameMasterController gm = new GameMasterController(new ChessBoard(), true);
-        ExecutorService evaluator = Executors.newSingleThreadExecutor();
-
-        for (Future<List<ChessMove>> chessMove : chessMoves) {
-            List<ChessMove> chessMoveList = chessMove.get();
-            evaluator.submit(() -> {
-                gm.Flush();
-                gm.setChessMoveList(chessMoveList);
-                gm.Evaluate();
-            }).get();
+        ExecutorService evaluators = Executors.newFixedThreadPool(nThreads);
+        try {
+            // With fewer files than threads most of the pool would idle, so each file is split across all threads instead
+            boolean splitFiles = filePaths.size() < nThreads;
+
+            List<Future<List<List<String>>>> allGames = new ArrayList<>();
+            for (String filePath : filePaths) {
+                if (splitFiles) {
+                    PGNParser p = new PGNParser();
+                    p.setDeduplicator(deduplicator);
+                    p.parsePGNFileParallel(filePath, nThreads);
+                    allGames.add(CompletableFuture.completedFuture(p.getGameList()));
+                    continue;
+                }
+                allGames.add(parsersPoolService.submit(() -> {
+                    PGNParser p = new PGNParser();
+                    p.setDeduplicator(deduplicator);
+                    p.parsePGNFile(filePath);
+                    return p.getGameList();
+                }));
+            }
+
+            List<List<String>> allFlattenedGames = new ArrayList<>();
+            for (Future<List<List<String>>> file : allGames) {
+                allFlattenedGames.addAll(file.get());
+            }
+
+            // Games wait for the evaluator packed, an int per move, so big corpora fit in memory
+            List<Future<PackedGame>> chessMoves = new ArrayList<>();
+            for (List<String> game : allFlattenedGames) {
+                chessMoves.add(
+                        parsersPoolService.submit(() ->
+                                ChessMovesParser.parsePacked(game)
+                        ));
+            }
+
+            // Games are evaluated on all threads, each taking a free controller with its own board.
+            // A game's log lines are held back while it is evaluated, so the games don't interleave in Games.log
+            BlockingQueue<GameMasterController> controllers = new ArrayBlockingQueue<>(nThreads);
+            for (int i = 0; i < nThreads; i++) {
+                controllers.add(new GameMasterController(new ChessBoard(), true));
+            }
+
+            // The sequencer: each game's lines are written once it and every game submitted before it are done.
+            // At most a few games per thread are in flight, so the held-back logs never pile up
+            int maxInFlight = IN_FLIGHT_PER_THREAD * nThreads;
+            Deque<Future<String>> gameLogs = new ArrayDeque<>();
+            for (int i = 0; i < chessMoves.size(); i++) {
+                if (gameLogs.size() == maxInFlight) {
+                    Util.GameLogger.commit(gameLogs.poll().get());
+                }
+                Future<PackedGame> chessMove = chessMoves.set(i, null);
+                gameLogs.add(evaluators.submit(() -> {
+                    PackedGame packedGame = chessMove.get();
+                    GameMasterController gm = controllers.take();
+                    String lines;
+                    Util.GameLogger.startBuffer();
+                    try {
+                        gm.Flush();
+                        gm.setPackedGame(packedGame);
+                        gm.Evaluate();
+                    } finally {
+                        lines = Util.GameLogger.takeBuffer();
+                        controllers.put(gm);
+                    }
+                    return lines;
+                }));
+            }
+            while (!gameLogs.isEmpty()) {
+                Util.GameLogger.commit(gameLogs.poll().get());
+            }
+        } finally {
+            // Everything was waited for unless a game failed; then the rest is not worth finishing
+            parsersPoolService.shutdownNow();
+            evaluators.shutdownNow();
         }
 
-        evaluator.shutdown();
+        if (deduplicator != null) {
+            Util.PGNLogger.info("Skipped " + deduplicator.getDuplicateCount() + " duplicate games");
+        }
 
     }
 }
@@ -0,0 +1,140 @@
+package Bonuse;
+
+import Parser.MovetextTokenizer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Measures how fast the moves are pulled out of movetext, by MovetextTokenizer and by the regex chain
+ * processMoves used before it (drop results, drop {comments} and (variations), then cut at move numbers).
+ * Both build the list of move strings of every game, pair checks are left out.
+ * Usage: MovetextTokenizerBenchmark [pgn files or folders...], defaults to src/testPgns.
+ */
+public class MovetextTokenizerBenchmark {
+    private static final long RUN_NANOS = 2_000_000_000L;
+
+    private static final Pattern MOVE_NUMBER = Pattern.compile("(\\d+\\.)(.*?)(?=\\d+\\.|$)");
+
+    public static void main(String[] args) throws Exception {
+        List<String> movetexts = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[]{"src/testPgns"}) {
+            collectMovetexts(Path.of(arg), movetexts);
+        }
+        if (movetexts.isEmpty()) {
+            System.out.println("No games found");
+            return;
+        }
+        String[] games = movetexts.toArray(new String[0]);
+        long chars = movetexts.stream().mapToLong(String::length).sum();
+        System.out.println("Input: " + games.length + " games, " + chars + " characters of movetext");
+
+        // Warm up both so the JIT has compiled them before measuring
+        runFor(games, MovetextTokenizerBenchmark::regexMoves, RUN_NANOS / 2);
+        runFor(games, MovetextTokenizerBenchmark::tokenizerMoves, RUN_NANOS / 2);
+
+        double regex = runFor(games, MovetextTokenizerBenchmark::regexMoves, RUN_NANOS);
+        double tokenizer = runFor(games, MovetextTokenizerBenchmark::tokenizerMoves, RUN_NANOS);
+        System.out.printf("Regex chain: %,.0f games/s, %,.0f MB/s%n", regex, regex * chars / games.length / 1e6);
+        System.out.printf("Tokenizer:   %,.0f games/s, %,.0f MB/s%n", tokenizer, tokenizer * chars / games.length / 1e6);
+        System.out.printf("Speedup:     %.1fx%n", tokenizer / regex);
+    }
+
+    /**
+     * Extracts the moves of every game over and over for about the given time.
+     *
+     * @return games per second
+     */
+    private static double runFor(String[] games, Function<String, List<String>> extractor, long nanos) {
+        long extracted = 0;
+        int moves = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (String game : games) {
+                moves += extractor.apply(game).size();
+            }
+            extracted += games.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        // Keep the results alive so the loop is not optimized away
+        if (moves == -1) {
+            System.out.println(moves);
+        }
+        return extracted * 1e9 / elapsed;
+    }
+
+    // The moves as processMoves found them before the tokenizer
+    private static List<String> regexMoves(String movetext) {
+        String text = movetext.trim();
+        text = text.replaceAll("1-0|0-1|1/2-1/2|\\*", "");
+        text = text.replaceAll("\\{[^}]*\\}", "");
+        text = text.replaceAll("\\([^)]*\\)", "");
+        List<String> moves = new ArrayList<>();
+        Matcher matcher = MOVE_NUMBER.matcher(text);
+        while (matcher.find()) {
+            for (String move : matcher.group(2).trim().split("\\s+")) {
+                moves.add(move);
+            }
+        }
+        return moves;
+    }
+
+    // The moves as processMoves finds them now: SAN tokens outside variations
+    private static List<String> tokenizerMoves(String movetext) {
+        MovetextTokenizer tokenizer = new MovetextTokenizer(movetext);
+        List<String> moves = new ArrayList<>();
+        int variationDepth = 0;
+        MovetextTokenizer.TokenType type;
+        while ((type = tokenizer.next()) != MovetextTokenizer.TokenType.END) {
+            switch (type) {
+                case VARIATION_START -> variationDepth++;
+                case VARIATION_END -> variationDepth = Math.max(0, variationDepth - 1);
+                case SAN -> {
+                    if (variationDepth == 0) {
+                        moves.add(tokenizer.text());
+                    }
+                }
+                default -> {
+                    // Move numbers, comments, NAGs and results carry no moves
+                }
+            }
+        }
+        return moves;
+    }
+
+    // The movetext of each game: its lines after the headers, joined by spaces
+    private static void collectMovetexts(Path path, List<String> movetexts) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    collectMovetexts(file, movetexts);
+                }
+            }
+            return;
+        }
+        StringBuilder movetext = new StringBuilder();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                if (movetext.length() > 0) {
+                    movetexts.add(movetext.toString());
+                    movetext.setLength(0);
+                }
+            } else if (!line.isEmpty()) {
+                movetext.append(movetext.length() > 0 ? " " : "").append(line);
+            }
+        }
+        if (movetext.length() > 0) {
+            movetexts.add(movetext.toString());
+        }
+    }
+}
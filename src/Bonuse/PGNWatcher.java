@@ -0,0 +1,146 @@
+package Bonuse;
+
+import Controller.GameMasterController;
+import Parser.PGNParser;
+import Parser.ParsedGame;
+import Parser.TailPosition;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Live ingest for growing PGN files (tournament broadcasts) and drop folders.
+ * <p>
+ * Every watched .pgn file has a TailPosition with the last committed byte offset, so each change
+ * only parses the appended bytes. Games are evaluated by the controller as soon as they end.
+ * Everything runs on the thread that calls run(), so the controller is never shared.
+ */
+public class PGNWatcher implements Runnable, AutoCloseable {
+    // Stands in the watched files of a directory for all its .pgn files
+    private static final Path ALL_FILES = Paths.get("*");
+
+    private final GameMasterController controller;
+    private final PGNParser parser = new PGNParser();
+    private final WatchService watchService;
+
+    // Committed position per file, files appearing in a watched folder are added on first change
+    private final Map<Path, TailPosition> positions = new HashMap<>();
+    // Watched directories, mapped to the files watched in them (ALL_FILES for a whole hot folder)
+    private final Map<Path, Set<Path>> watchedFiles = new HashMap<>();
+
+    public PGNWatcher(GameMasterController controller) throws IOException {
+        this.controller = controller;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Watches a growing PGN file, or every .pgn file in a folder (including files dropped in later).
+     * Games already in the file(s) are ingested right away.
+     */
+    public void watch(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        if (Files.isDirectory(absolute)) {
+            absolute.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            watchedFiles.computeIfAbsent(absolute, d -> new HashSet<>()).add(ALL_FILES);
+            try (Stream<Path> files = Files.list(absolute)) {
+                files.filter(PGNWatcher::isPgn).sorted().forEach(this::ingest);
+            }
+        } else {
+            absolute.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            watchedFiles.computeIfAbsent(absolute.getParent(), d -> new HashSet<>()).add(absolute);
+            ingest(absolute);
+        }
+    }
+
+    /**
+     * Waits for changes and ingests appended games until close() is called.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // Events were lost, just look at every file we know of
+                        positions.keySet().forEach(this::ingest);
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (isWatched(file)) {
+                        ingest(file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close() was called
+        }
+    }
+
+    /**
+     * Parses whatever was appended to the file since the last time and evaluates the finished games.
+     */
+    public void ingest(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            TailPosition position = positions.computeIfAbsent(file, f -> new TailPosition());
+            if (Files.size(file) < position.getOffset()) {
+                // The file was truncated or replaced, start over
+                Util.PGNLogger.warning("File shrank, re-reading from the start: " + file);
+                position = new TailPosition();
+                positions.put(file, position);
+            }
+            parser.parseAppended(file, position, game -> evaluate(file, game));
+        } catch (IOException e) {
+            Util.PGNLogger.error("Error reading PGN file: " + file);
+        }
+    }
+
+    /**
+     * Whether changes to the file are ingested: it was watched itself, or it is a .pgn file in a watched folder.
+     */
+    public boolean isWatched(Path file) {
+        Path absolute = file.toAbsolutePath();
+        Set<Path> files = watchedFiles.get(absolute.getParent());
+        if (files == null) {
+            return false;
+        }
+        return files.contains(absolute) || files.contains(ALL_FILES) && isPgn(absolute);
+    }
+
+    public TailPosition getPosition(Path file) {
+        return positions.get(file.toAbsolutePath());
+    }
+
+    private void evaluate(Path file, ParsedGame game) {
+        Util.GameLogger.setContext(file.getFileName() + " game #" + game.getGameNumber());
+        try {
+            controller.EvaluateSan(game.getMoves());
+        } finally {
+            Util.GameLogger.clearContext();
+        }
+    }
+
+    private static boolean isPgn(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".pgn");
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
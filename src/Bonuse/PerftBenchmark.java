@@ -0,0 +1,62 @@
+package Bonuse;
+
+import Model.ChessBoard;
+import Model.MoveGenerator;
+
+/**
+ * Runs perft on the standard reference positions, checks the node counts against the published
+ * ones and reports nodes per second, for the move generator and ChessBoard.MakeMove/UnmakeMove.
+ * Usage: PerftBenchmark [max depth], defaults to the deepest count listed for each position.
+ */
+public class PerftBenchmark {
+    private static final String[] NAMES = {"Start position", "Kiwipete", "Position 3", "Position 4", "Position 5"};
+    private static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+    // By position, the node counts from depth 1 on
+    private static final long[][] COUNTS = {
+            {20, 400, 8902, 197281, 4865609},
+            {48, 2039, 97862, 4085603},
+            {14, 191, 2812, 43238, 674624},
+            {6, 264, 9467, 422333},
+            {44, 1486, 62379, 2103487}
+    };
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+
+        // Warm up so the JIT has compiled the generator before measuring
+        ChessBoard warmUp = new ChessBoard();
+        warmUp.LoadFen(FENS[1]);
+        MoveGenerator.perft(warmUp, 3);
+
+        long totalNodes = 0;
+        long totalNanos = 0;
+        boolean allMatch = true;
+        for (int i = 0; i < FENS.length; i++) {
+            ChessBoard board = new ChessBoard();
+            board.LoadFen(FENS[i]);
+            System.out.println(NAMES[i] + ": " + FENS[i]);
+            for (int depth = 1; depth <= Math.min(maxDepth, COUNTS[i].length); depth++) {
+                long start = System.nanoTime();
+                long nodes = MoveGenerator.perft(board, depth);
+                long nanos = System.nanoTime() - start;
+                boolean match = nodes == COUNTS[i][depth - 1];
+                allMatch &= match;
+                totalNodes += nodes;
+                totalNanos += nanos;
+                System.out.printf("  depth %d: %,d nodes %s in %.1f ms, %,.0f nodes/s%n", depth, nodes,
+                        match ? "ok" : "MISMATCH, expected " + COUNTS[i][depth - 1], nanos / 1e6, nodes * 1e9 / nanos);
+            }
+        }
+        System.out.printf("Total: %,d nodes, %,.0f nodes/s%n", totalNodes, totalNodes * 1e9 / totalNanos);
+        if (!allMatch) {
+            System.out.println("Node counts do not match");
+            System.exit(1);
+        }
+    }
+}
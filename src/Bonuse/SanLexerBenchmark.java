@@ -0,0 +1,103 @@
+package Bonuse;
+
+import Model.ChessMove;
+import Parser.MovetextTokenizer;
+import Parser.SanLexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Measures SanLexer throughput in SAN tokens per second, on one thread and on every core.
+ * The SAN table is bypassed so every token is really lexed.
+ * Usage: SanLexerBenchmark [pgn files or folders...], defaults to src/testPgns.
+ */
+public class SanLexerBenchmark {
+    private static final long RUN_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        for (String arg : args.length > 0 ? args : new String[]{"src/testPgns"}) {
+            collectTokens(Path.of(arg), tokens);
+        }
+        if (tokens.isEmpty()) {
+            System.out.println("No SAN tokens found");
+            return;
+        }
+        String[] sans = tokens.toArray(new String[0]);
+        System.out.println("Input: " + sans.length + " SAN tokens");
+
+        // Warm up so the JIT has compiled the lexer before measuring
+        lexFor(sans, RUN_NANOS / 2);
+
+        double single = lexFor(sans, RUN_NANOS);
+        System.out.printf("1 thread:  %,.0f tokens/s%n", single);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores > 1) {
+            ExecutorService pool = Executors.newFixedThreadPool(cores);
+            List<Future<Double>> runs = new ArrayList<>();
+            for (int i = 0; i < cores; i++) {
+                runs.add(pool.submit(() -> lexFor(sans, RUN_NANOS)));
+            }
+            double total = 0;
+            for (Future<Double> run : runs) {
+                total += run.get();
+            }
+            pool.shutdown();
+            System.out.printf("%d threads: %,.0f tokens/s, %,.0f tokens/s per core%n", cores, total, total / cores);
+        }
+    }
+
+    /**
+     * Lexes the tokens over and over for about the given time.
+     *
+     * @return tokens per second
+     */
+    private static double lexFor(String[] sans, long nanos) {
+        ChessMove move = new ChessMove();
+        long lexed = 0;
+        int valid = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < sans.length; i++) {
+                if (SanLexer.lex(sans[i], 0, sans[i].length(), (i & 1) == 0, move)) {
+                    valid++;
+                }
+            }
+            lexed += sans.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        // Keep the results alive so the loop is not optimized away
+        if (valid == -1) {
+            System.out.println(move);
+        }
+        return lexed * 1e9 / elapsed;
+    }
+
+    private static void collectTokens(Path path, List<String> tokens) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    collectTokens(file, tokens);
+                }
+            }
+            return;
+        }
+        MovetextTokenizer tokenizer = new MovetextTokenizer(Files.readString(path));
+        MovetextTokenizer.TokenType type;
+        while ((type = tokenizer.next()) != MovetextTokenizer.TokenType.END) {
+            if (type == MovetextTokenizer.TokenType.SAN) {
+                tokens.add(tokenizer.text());
+            }
+        }
+    }
+}
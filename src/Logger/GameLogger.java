@@ -8,8 +8,9 @@ import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 import java.util.logging.Handler;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.nio.file.Paths;
@@ -26,14 +27,34 @@ public class GameLogger {
     // File-specific loggers (one per PGN file)
     private static final Map<String, Logger> FILE_LOGGERS = new ConcurrentHashMap<>();
 
+    // Lines held back on this thread between startBuffer() and takeBuffer(), already formatted
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<>();
+    private static final ChessLogFormatter BUFFER_FORMATTER = new ChessLogFormatter();
+
+    /**
+     * Lines taken from a buffer; the formatter writes them out as they are
+     */
+    private static class BufferedLines extends LogRecord {
+        private static final long serialVersionUID = 1L;
+
+        BufferedLines(String lines) {
+            super(Level.INFO, lines);
+        }
+    }
+
     /**
      * Custom formatter for cleaner log output with thread and context information
      */
     private static class ChessLogFormatter extends Formatter {
-        private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        // Unlike SimpleDateFormat, safe to share between the threads that format into their buffers
+        private static final DateTimeFormatter dateFormat =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
         @Override
         public String format(LogRecord record) {
+            if (record instanceof BufferedLines) {
+                return record.getMessage();
+            }
             StringBuilder sb = new StringBuilder();
 
             // Get the thread name
@@ -47,7 +68,7 @@ public class GameLogger {
             sb.append("[")
                     .append(record.getLevel().getName())
                     .append("] [")
-                    .append(dateFormat.format(new Date(record.getMillis())))
+                    .append(dateFormat.format(Instant.ofEpochMilli(record.getMillis())))
                     .append("] [")
                     .append(threadName)
                     .append("] ")
@@ -124,6 +145,13 @@ public class GameLogger {
         CONTEXT.set(context);
     }
 
+    /**
+     * Get the current thread's context, so work handed to other threads can log under it
+     */
+    public static String getContext() {
+        return CONTEXT.get();
+    }
+
     /**
      * Clear the current thread's context
      */
@@ -131,6 +159,35 @@ public class GameLogger {
         CONTEXT.remove();
     }
 
+    /**
+     * From now on the current thread's log lines are held back, with their thread and context,
+     * until takeBuffer() hands them over. Used to keep each game's lines together when games are
+     * evaluated in parallel.
+     */
+    public static void startBuffer() {
+        BUFFER.set(new StringBuilder());
+    }
+
+    /**
+     * Stops holding back the current thread's log lines
+     *
+     * @return the lines held back since startBuffer(), formatted, to pass to commit()
+     */
+    public static String takeBuffer() {
+        StringBuilder lines = BUFFER.get();
+        BUFFER.remove();
+        return lines != null ? lines.toString() : "";
+    }
+
+    /**
+     * Writes lines taken from a buffer to the main log, in one piece
+     */
+    public static void commit(String lines) {
+        if (!lines.isEmpty()) {
+            getLogger().log(new BufferedLines(lines));
+        }
+    }
+
     /**
      * Get or create a file-specific logger
      */
@@ -166,19 +223,19 @@ public class GameLogger {
 
     // Standard logging methods that use the main logger
     public static void info(String message) {
-        getLogger().info(message);
+        log(Level.INFO, message, null);
     }
 
     public static void warning(String message) {
-        getLogger().warning(message);
+        log(Level.WARNING, message, null);
     }
 
     public static void error(String message) {
-        getLogger().severe(message);
+        log(Level.SEVERE, message, null);
     }
 
     public static void error(String message, Throwable e) {
-        getLogger().log(Level.SEVERE, message, e);
+        log(Level.SEVERE, message, e);
     }
 
     // File-specific logging methods
@@ -198,6 +255,19 @@ public class GameLogger {
         getFileLogger(pgnFilePath).log(Level.SEVERE, message, e);
     }
 
+    // Writes to the main log, or to the thread's buffer while it has one
+    private static void log(Level level, String message, Throwable e) {
+        Logger logger = getLogger();
+        StringBuilder buffer = BUFFER.get();
+        if (buffer == null) {
+            logger.log(level, message, e);
+        } else if (logger.isLoggable(level)) {
+            LogRecord record = new LogRecord(level, message);
+            record.setThrown(e);
+            buffer.append(BUFFER_FORMATTER.format(record));
+        }
+    }
+
     private static Logger getLogger() {
         if (!initialized) init();
         return MAIN_LOGGER;
@@ -0,0 +1,247 @@
+package Model;
+
+/**
+ * Square numbering and precomputed tables for ChessBoard's bitboards.
+ * A square is row * 8 + col, the same rows and columns as ChessBoard.board (row 0 is rank 8),
+ * and a bitboard has bit n set for square n.
+ * <p>
+ * Rook and bishop attacks are looked up with magic bitboards: the blockers on a square's rays,
+ * multiplied by that square's magic number, give an index into its table of attack sets.
+ * The magics were found once with a random search over sparse 64-bit numbers; the attack tables
+ * are filled in when the class is initialized. Java 17 has no PEXT intrinsic, which would make
+ * the multiplication unnecessary.
+ */
+public final class Bitboards {
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    // By Color ordinal: the squares a pawn of that color on the square attacks
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[] ROOK_RAYS = new long[64];
+    private static final long[] BISHOP_RAYS = new long[64];
+    // Squares strictly between two squares on a line, 0 if they are not on one
+    private static final long[][] BETWEEN = new long[64][64];
+    // The whole line through two squares, edge to edge, 0 if they are not on one
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_STEPS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_STEPS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final long[] ROOK_MAGICS = {
+            0x2080008226104004L, 0x0340004290012000L, 0x3080100008200082L, 0x2080041000080080L,
+            0x1080028008000400L, 0x8580120001040080L, 0x2100020040A1000CL, 0x0200002049008204L,
+            0x0120800020804001L, 0x8301802000400080L, 0x9005004020050010L, 0x0801002410000900L,
+            0x000900280100C430L, 0x1408800400808200L, 0x4103001200810004L, 0x0041000041001092L,
+            0xA300848008400028L, 0x10008C8040002000L, 0x0028808010002006L, 0x0222020020104008L,
+            0x0400828008000400L, 0x2004808004000200L, 0x0000040008900102L, 0x02800200008D2044L,
+            0x0081400480048224L, 0x0820004040003000L, 0x3800200480100380L, 0x0A00080080100080L,
+            0x0228008080080400L, 0x0882000200080411L, 0x0008014400285002L, 0x2000004200040081L,
+            0x0040204000800082L, 0x1400400080802002L, 0x0020080040401000L, 0x9000080080801000L,
+            0x1100800402802800L, 0x0002800400800200L, 0x0040010204000810L, 0x00208004C8803100L,
+            0x000220C000928000L, 0x20B0200450004000L, 0x4000100020008080L, 0x4010008008008011L,
+            0x1201000800050011L, 0x0080040002008080L, 0x9582080170040082L, 0x0840010080420024L,
+            0x0100820030490200L, 0x8209134200208200L, 0x8209134200208200L, 0x0000800800100280L,
+            0x8004020408008080L, 0x0000020004008080L, 0x1801008412002100L, 0x8240041449008200L,
+            0x0300800020C11103L, 0x0000B08300400861L, 0x9405002000120841L, 0x0000201000040901L,
+            0x1022002004091002L, 0x0296000104089022L, 0x204400A802211004L, 0x4004004B24840902L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x10102A2800409200L, 0x01A80D1424044002L, 0x080810C10A020000L, 0x0004410020000600L,
+            0x0002021000000440L, 0x0511100804C02140L, 0x05044C1228400000L, 0xC124404804100210L,
+            0x0842209602981502L, 0x0800100208084082L, 0x0130412102008001L, 0x1800080601420506L,
+            0x0000121210400002L, 0x0021052848400820L, 0x0004D04104104243L, 0x0004D04104104243L,
+            0x0112181820080691L, 0x0004000210040124L, 0x1108040404440408L, 0x0112011040104000L,
+            0x1482000412020201L, 0x210A0101410CA000L, 0x400240040D041002L, 0x120A021100420280L,
+            0x82340460401004A0L, 0x0010110C48010100L, 0x0008248808020400L, 0x0108080080202020L,
+            0x0001010020104000L, 0x1881010402008088L, 0x0404010810411040L, 0x1881010402008088L,
+            0x1004022250082000L, 0x1101042004102100L, 0x53040204400A0400L, 0x5400400820020201L,
+            0x0020010400410408L, 0x0044080808008080L, 0x52910524040A0200L, 0x0682220040020048L,
+            0x80108404A0494124L, 0x9600880402001010L, 0x0080C20250010100L, 0x0040106124001800L,
+            0x0018415020808404L, 0x040410A081003202L, 0x040410A081003202L, 0x040410A081003202L,
+            0x0044040404840010L, 0x0942050888040000L, 0x0942050888040000L, 0x000401008404090CL,
+            0x0000081002121100L, 0x00084A2048108040L, 0x2122088A08004C00L, 0x0112440102220808L,
+            0x0109812090042090L, 0x000020808088A005L, 0x0200000086244204L, 0x8004010020420202L,
+            0x00000858D0020210L, 0x0001242120024080L, 0x5402409004B08880L, 0x006014100220A060L
+    };
+    // Per square: the blocker squares that matter, the shift and the attack table
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    static {
+        int[][] knightSteps = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+        int[][] kingSteps = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+        for (int square = 0; square < 64; square++) {
+            int row = square >> 3;
+            int col = square & 7;
+            for (int[] step : knightSteps) {
+                KNIGHT_ATTACKS[square] |= bitIfOnBoard(row + step[0], col + step[1]);
+            }
+            // By step; the opposite of step i is step 7 - i
+            long[] rays = new long[8];
+            for (int i = 0; i < 8; i++) {
+                int[] step = kingSteps[i];
+                KING_ATTACKS[square] |= bitIfOnBoard(row + step[0], col + step[1]);
+                // Walk the whole ray, filling in the squares between as we go
+                long between = 0;
+                for (int r = row + step[0], c = col + step[1]; r >= 0 && r < 8 && c >= 0 && c < 8; r += step[0], c += step[1]) {
+                    int target = square(r, c);
+                    BETWEEN[square][target] = between;
+                    between |= bit(target);
+                }
+                rays[i] = between;
+                if (step[0] == 0 || step[1] == 0) {
+                    ROOK_RAYS[square] |= between;
+                } else {
+                    BISHOP_RAYS[square] |= between;
+                }
+            }
+            for (int i = 0; i < 8; i++) {
+                long line = rays[i] | rays[7 - i] | bit(square);
+                for (long targets = rays[i]; targets != 0; targets &= targets - 1) {
+                    LINE[square][Long.numberOfTrailingZeros(targets)] = line;
+                }
+            }
+            // White pawns move up the board (towards row 0), black pawns down
+            PAWN_ATTACKS[Color.WHITE.ordinal()][square] = bitIfOnBoard(row - 1, col - 1) | bitIfOnBoard(row - 1, col + 1);
+            PAWN_ATTACKS[Color.BLACK.ordinal()][square] = bitIfOnBoard(row + 1, col - 1) | bitIfOnBoard(row + 1, col + 1);
+        }
+
+        for (int square = 0; square < 64; square++) {
+            fillSliderTable(square, ROOK_STEPS, ROOK_MAGICS[square], ROOK_MASKS, ROOK_SHIFTS, ROOK_ATTACKS);
+            fillSliderTable(square, BISHOP_STEPS, BISHOP_MAGICS[square], BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_ATTACKS);
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static int square(int row, int col) {
+        return row * 8 + col;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * The square's name, e.g. "e4".
+     */
+    public static String name(int square) {
+        return "" + (char) ('a' + (square & 7)) + (8 - (square >> 3));
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long pawnAttacks(Color color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    /**
+     * Every square on the same row or column, on an empty board.
+     */
+    public static long rookRays(int square) {
+        return ROOK_RAYS[square];
+    }
+
+    /**
+     * Every square on the same diagonals, on an empty board.
+     */
+    public static long bishopRays(int square) {
+        return BISHOP_RAYS[square];
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * The row, column or diagonal through both squares, from edge to edge, or 0 if there is none.
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * The squares a rook on the square attacks: along its rays up to and including the first occupied square.
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_ATTACKS[square][(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * The squares a bishop on the square attacks: along its rays up to and including the first occupied square.
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_ATTACKS[square][(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Fills a square's attack table: every arrangement of blockers on its mask, times the magic,
+     * gives the slot of the attacks for that arrangement.
+     */
+    private static void fillSliderTable(int square, int[][] steps, long magic, long[] masks, int[] shifts, long[][] attacks) {
+        // The last square of a ray never blocks anything behind it, so it is left out of the mask
+        long mask = 0;
+        int row = square >> 3;
+        int col = square & 7;
+        for (int[] step : steps) {
+            for (int r = row + step[0], c = col + step[1];
+                 r + step[0] >= 0 && r + step[0] < 8 && c + step[1] >= 0 && c + step[1] < 8;
+                 r += step[0], c += step[1]) {
+                mask |= bit(square(r, c));
+            }
+        }
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+
+        // Every subset of the mask, the empty one first
+        long blockers = 0;
+        do {
+            long sliding = slidingAttacks(square, blockers, steps);
+            int index = (int) ((blockers * magic) >>> (64 - bits));
+            // A slider always attacks something, so 0 is a free slot
+            if (table[index] != 0 && table[index] != sliding) {
+                throw new IllegalStateException("Magic for square " + square + " maps two attack sets to one slot");
+            }
+            table[index] = sliding;
+            blockers = (blockers - mask) & mask;
+        } while (blockers != 0);
+
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        attacks[square] = table;
+    }
+
+    // Walks each ray square by square, stopping at the first occupied square
+    private static long slidingAttacks(int square, long occupied, int[][] steps) {
+        long attacks = 0;
+        int row = square >> 3;
+        int col = square & 7;
+        for (int[] step : steps) {
+            for (int r = row + step[0], c = col + step[1]; r >= 0 && r < 8 && c >= 0 && c < 8; r += step[0], c += step[1]) {
+                long target = bit(square(r, c));
+                attacks |= target;
+                if ((occupied & target) != 0) {
+                    break;
+                }
+            }
+        }
+        return attacks;
+    }
+
+    private static long bitIfOnBoard(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8 ? bit(square(row, col)) : 0;
+    }
+}
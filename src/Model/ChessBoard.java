@@ -2,17 +2,461 @@ package Model;
 
 // A simplified chess board implementation
 public class ChessBoard {
+    // Castling rights, as bits of getCastlingRights()
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    private static final int ALL_CASTLING = 15;
 
 
+    /**
+     * The pieces by row and column. Kept in step with the bitboards by SetPiece and MovePiece;
+     * anything written here directly is picked up by the next Sync(), which the controller runs
+     * before every move it plays, as does the copy constructor.
+     */
     public ChessPiece[][] board;
 
+    // One bitboard per color and piece type (Color ordinal * 6 + PieceType ordinal), see Bitboards
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private long occupied;
+    // What the bitboards hold for each square, to spot direct writes to board
+    private final ChessPiece[] mirror = new ChessPiece[64];
+
+    private Color sideToMove = Color.WHITE;
+    private int castlingRights = ALL_CASTLING;
+    private int enPassantSquare = -1;
+
+    // Zobrist key of the position, updated with every change, see Zobrist
+    private long zobristKey;
+    // Keys of the positions since the board was reset, the current one last
+    private long[] keyHistory = new long[128];
+    private int historySize;
+    // Plies since the last capture or pawn move
+    private int halfmoveClock;
+
+    // What UnmakeMove needs to take back each move played with MakeMove, the last one on top:
+    // the squares and state as packed by MakeMove, the key before the move and the captured piece
+    private long[] undoInfo = new long[64];
+    private long[] undoKeys = new long[64];
+    private ChessPiece[] undoCaptured = new ChessPiece[64];
+    private int undoSize;
+
+    // Set up once; new boards and ResetBoard copy it instead of placing pieces one by one
+    private static final ChessBoard START_POSITION = new ChessBoard(new ChessPiece[8][8]);
+
 
     public ChessBoard() {
         board = new ChessPiece[8][8];
+        CopyFrom(START_POSITION);
+    }
+
+    private ChessBoard(ChessPiece[][] board) {
+        this.board = board;
         SetupBoard();
     }
+
+    /**
+     * Copy of another board's position, castling rights and en passant included.
+     * Moves on the copy do not affect the original, and the copy has no moves to take back.
+     */
+    public ChessBoard(ChessBoard other) {
+        board = new ChessPiece[8][8];
+        other.Sync();
+        CopyFrom(other);
+    }
     public  void ResetBoard(){
-        SetupBoard();
+        CopyFrom(START_POSITION);
+    }
+
+    // Pieces are immutable, so copying the references copies the position
+    private void CopyFrom(ChessBoard other) {
+        for (int row = 0; row < 8; row++) {
+            System.arraycopy(other.board[row], 0, board[row], 0, 8);
+        }
+        System.arraycopy(other.mirror, 0, mirror, 0, 64);
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        zobristKey = other.zobristKey;
+        if (keyHistory.length < other.historySize) {
+            keyHistory = new long[other.keyHistory.length];
+        }
+        System.arraycopy(other.keyHistory, 0, keyHistory, 0, other.historySize);
+        historySize = other.historySize;
+        halfmoveClock = other.halfmoveClock;
+        undoSize = 0;
+    }
+
+    /**
+     * Sets up the position from FEN, e.g. "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1".
+     * The halfmove clock and move number may be left out. The history restarts at this position.
+     *
+     * @throws IllegalArgumentException if the FEN is not valid
+     */
+    public void LoadFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] rows = fields[0].split("/");
+        if (fields.length < 4 || rows.length != 8) {
+            throw new IllegalArgumentException("Not a FEN position: " + fen);
+        }
+        ChessPiece[][] placed = new ChessPiece[8][8];
+        for (int row = 0; row < 8; row++) {
+            int col = 0;
+            for (char c : rows[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                int type = "PNBRQK".indexOf(Character.toUpperCase(c));
+                if (type < 0 || col > 7) {
+                    throw new IllegalArgumentException("Bad row " + rows[row] + " in FEN: " + fen);
+                }
+                placed[row][col++] = ChessPiece.of(PieceType.values()[type], Character.isUpperCase(c) ? Color.WHITE : Color.BLACK);
+            }
+            if (col != 8) {
+                throw new IllegalArgumentException("Bad row " + rows[row] + " in FEN: " + fen);
+            }
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        int rights = 0;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int right = "KQkq".indexOf(c);
+                if (right < 0) {
+                    throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+                }
+                rights |= 1 << right;
+            }
+        }
+        int enPassant = -1;
+        if (!fields[3].equals("-")) {
+            if (!fields[3].matches("[a-h][36]")) {
+                throw new IllegalArgumentException("Bad en passant square in FEN: " + fen);
+            }
+            enPassant = Bitboards.square('8' - fields[3].charAt(1), fields[3].charAt(0) - 'a');
+        }
+        int clock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+
+        for (int row = 0; row < 8; row++) {
+            System.arraycopy(placed[row], 0, board[row], 0, 8);
+        }
+        sideToMove = fields[1].equals("w") ? Color.WHITE : Color.BLACK;
+        castlingRights = rights;
+        enPassantSquare = enPassant;
+        Rebuild();
+        halfmoveClock = clock;
+    }
+
+    public ChessPiece GetPiece(int row, int col) {
+        return board[row][col];
+    }
+
+    /**
+     * Puts a piece on a square, or empties it if piece is null. Only the placement changes,
+     * side to move, castling and en passant are left to CompleteMove.
+     */
+    public void SetPiece(int row, int col, ChessPiece piece) {
+        int square = Bitboards.square(row, col);
+        Toggle(square, mirror[square]);
+        Toggle(square, piece);
+        mirror[square] = piece;
+        board[row][col] = piece;
+    }
+
+    /**
+     * Moves whatever is on the from-square to the to-square, replacing what was there.
+     */
+    public void MovePiece(int fromRow, int fromCol, int toRow, int toCol) {
+        ChessPiece piece = board[fromRow][fromCol];
+        SetPiece(fromRow, fromCol, null);
+        SetPiece(toRow, toCol, piece);
+    }
+
+    /**
+     * Updates the position state once a move has been played: castling rights are lost when a king
+     * or rook leaves its square or a rook is captured on it, a pawn's double step sets the en passant
+     * square, and the other side is to move. The new key is added to the history.
+     * Call it after the pieces were moved.
+     *
+     * @param fromRow       -1 if the from-square is unknown, then only the side and en passant change
+     * @param irreversible  whether the move was a capture or a pawn move, which restarts the 50-move count
+     */
+    public void CompleteMove(int fromRow, int fromCol, int toRow, int toCol, boolean irreversible) {
+        long key = zobristKey ^ StateKey();
+        enPassantSquare = -1;
+        if (fromRow >= 0) {
+            castlingRights &= ~(CastlingRightsOf(fromRow, fromCol) | CastlingRightsOf(toRow, toCol));
+            ChessPiece piece = board[toRow][toCol];
+            if (piece != null && piece.getPieceType() == PieceType.PAWN && Math.abs(toRow - fromRow) == 2) {
+                enPassantSquare = Bitboards.square((fromRow + toRow) / 2, toCol);
+            }
+        }
+        sideToMove = sideToMove.opposite();
+        zobristKey = key ^ StateKey();
+
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+        if (historySize == keyHistory.length) {
+            keyHistory = java.util.Arrays.copyOf(keyHistory, historySize * 2);
+        }
+        keyHistory[historySize++] = zobristKey;
+    }
+
+    /**
+     * Plays a move from one square to another and remembers how to take it back with UnmakeMove.
+     * Everything about the move is done here: a capture, en passant included, the rook of a
+     * castling (a king moving two columns), a promotion and the position state, as CompleteMove.
+     * The move is not checked, so it has to be a legal one; nothing is allocated.
+     *
+     * @param promotion what a pawn reaching the last row becomes, or null
+     */
+    public void MakeMove(int from, int to, PieceType promotion) {
+        ChessPiece piece = mirror[from];
+        int capturedSquare = to;
+        boolean isPawn = piece.getPieceType() == PieceType.PAWN;
+        // A pawn moving diagonally onto the en passant square takes the pawn beside it
+        if (isPawn && to == enPassantSquare && ((from ^ to) & 7) != 0) {
+            capturedSquare = (from & ~7) | (to & 7);
+        }
+        ChessPiece captured = mirror[capturedSquare];
+
+        if (undoSize == undoInfo.length) {
+            undoInfo = java.util.Arrays.copyOf(undoInfo, undoSize * 2);
+            undoKeys = java.util.Arrays.copyOf(undoKeys, undoSize * 2);
+            undoCaptured = java.util.Arrays.copyOf(undoCaptured, undoSize * 2);
+        }
+        undoInfo[undoSize] = from | to << 6 | capturedSquare << 12 | (promotion != null ? 1 << 18 : 0)
+                | castlingRights << 19 | (enPassantSquare + 1) << 23 | (long) halfmoveClock << 32;
+        undoKeys[undoSize] = zobristKey;
+        undoCaptured[undoSize] = captured;
+        undoSize++;
+
+        int fromRow = from >> 3;
+        int fromCol = from & 7;
+        int toRow = to >> 3;
+        int toCol = to & 7;
+        if (capturedSquare != to) {
+            SetPiece(capturedSquare >> 3, capturedSquare & 7, null);
+        }
+        SetPiece(toRow, toCol, promotion != null ? ChessPiece.of(promotion, piece.getPieceColor()) : piece);
+        SetPiece(fromRow, fromCol, null);
+        if (piece.getPieceType() == PieceType.KING && Math.abs(toCol - fromCol) == 2) {
+            MovePiece(fromRow, toCol > fromCol ? 7 : 0, fromRow, toCol > fromCol ? 5 : 3);
+        }
+        CompleteMove(fromRow, fromCol, toRow, toCol, isPawn || captured != null);
+    }
+
+    /**
+     * Takes back the last move played with MakeMove: the pieces, the position state, the key and
+     * the history are as they were before it.
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void UnmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to take back");
+        }
+        undoSize--;
+        long info = undoInfo[undoSize];
+        int from = (int) info & 63;
+        int to = (int) (info >>> 6) & 63;
+        int capturedSquare = (int) (info >>> 12) & 63;
+
+        int fromRow = from >> 3;
+        int fromCol = from & 7;
+        int toRow = to >> 3;
+        int toCol = to & 7;
+        ChessPiece piece = board[toRow][toCol];
+        if ((info & 1 << 18) != 0) {
+            piece = ChessPiece.of(PieceType.PAWN, piece.getPieceColor());
+        }
+        if (piece.getPieceType() == PieceType.KING && Math.abs(toCol - fromCol) == 2) {
+            MovePiece(fromRow, toCol > fromCol ? 5 : 3, fromRow, toCol > fromCol ? 7 : 0);
+        }
+        SetPiece(toRow, toCol, null);
+        SetPiece(fromRow, fromCol, piece);
+        SetPiece(capturedSquare >> 3, capturedSquare & 7, undoCaptured[undoSize]);
+
+        castlingRights = (int) (info >>> 19) & 15;
+        enPassantSquare = ((int) (info >>> 23) & 127) - 1;
+        halfmoveClock = (int) (info >>> 32);
+        sideToMove = sideToMove.opposite();
+        zobristKey = undoKeys[undoSize];
+        historySize--;
+    }
+
+    /**
+     * How many moves UnmakeMove can take back.
+     */
+    public int getUndoDepth() {
+        return undoSize;
+    }
+
+    /**
+     * Whether the current position has occurred at least three times since the board was reset,
+     * with the same side to move, castling rights and en passant square.
+     */
+    public boolean IsThreefoldRepetition() {
+        // Only positions since the last capture or pawn move can repeat, and only every other ply
+        int occurrences = 0;
+        int oldest = Math.max(0, historySize - 1 - halfmoveClock);
+        for (int i = historySize - 1; i >= oldest; i -= 2) {
+            if (keyHistory[i] == zobristKey && ++occurrences == 3) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether 50 moves by each side have been played without a capture or a pawn move.
+     */
+    public boolean IsFiftyMoveRule() {
+        return halfmoveClock >= 100;
+    }
+
+    /**
+     * Brings the bitboards up to date with board if it was written to directly. Finding out costs 64
+     * reference compares against what the bitboards hold. The history, the 50-move count and the
+     * moves to take back are kept; the current position just gets its new key.
+     *
+     * @return true if something had changed
+     */
+    public boolean Sync() {
+        for (int square = 0; square < 64; square++) {
+            if (board[square >> 3][square & 7] != mirror[square]) {
+                RebuildPieces();
+                keyHistory[historySize - 1] = zobristKey;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getPieces(Color color, PieceType type) {
+        return pieces[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    public long getOccupancy(Color color) {
+        return colors[color.ordinal()];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Whether a piece of the given color attacks the square, whatever is on it.
+     */
+    public boolean IsAttacked(int square, Color by) {
+        int base = by.ordinal() * 6;
+        long queens = pieces[base + PieceType.QUEEN.ordinal()];
+        // A pawn of ours on the square would attack exactly the squares their pawns attack it from
+        return (Bitboards.pawnAttacks(by.opposite(), square) & pieces[base + PieceType.PAWN.ordinal()]) != 0
+                || (Bitboards.knightAttacks(square) & pieces[base + PieceType.KNIGHT.ordinal()]) != 0
+                || (Bitboards.kingAttacks(square) & pieces[base + PieceType.KING.ordinal()]) != 0
+                || (Bitboards.rookAttacks(square, occupied) & (pieces[base + PieceType.ROOK.ordinal()] | queens)) != 0
+                || (Bitboards.bishopAttacks(square, occupied) & (pieces[base + PieceType.BISHOP.ordinal()] | queens)) != 0;
+    }
+
+    public Color getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * For setting up positions: which castlings are still allowed, as WHITE_KINGSIDE etc. bits.
+     */
+    public void SetCastlingRights(int castlingRights) {
+        zobristKey ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * The keys of the positions since the board was reset, oldest first and the current one last.
+     */
+    public long[] getKeyHistory() {
+        return java.util.Arrays.copyOf(keyHistory, historySize);
+    }
+
+    /**
+     * @return the square a pawn can capture en passant on, or -1
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    private static int CastlingRightsOf(int row, int col) {
+        int square = Bitboards.square(row, col);
+        return switch (square) {
+            case 60 -> WHITE_KINGSIDE | WHITE_QUEENSIDE;  // e1
+            case 63 -> WHITE_KINGSIDE;                    // h1
+            case 56 -> WHITE_QUEENSIDE;                   // a1
+            case 4 -> BLACK_KINGSIDE | BLACK_QUEENSIDE;   // e8
+            case 7 -> BLACK_KINGSIDE;                     // h8
+            case 0 -> BLACK_QUEENSIDE;                    // a8
+            default -> 0;
+        };
+    }
+
+    // Adds the piece to the bitboards if it is not on them, removes it if it is
+    private void Toggle(int square, ChessPiece piece) {
+        if (piece == null) {
+            return;
+        }
+        long bit = Bitboards.bit(square);
+        occupied ^= bit;
+        if (piece.getPieceColor() != null) {
+            colors[piece.getPieceColor().ordinal()] ^= bit;
+            if (piece.getPieceType() != null) {
+                int index = piece.getPieceColor().ordinal() * 6 + piece.getPieceType().ordinal();
+                pieces[index] ^= bit;
+                zobristKey ^= Zobrist.piece(index, square);
+            }
+        }
+    }
+
+    private long StateKey() {
+        return Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.side(sideToMove);
+    }
+
+    // Recomputes everything from board; the history restarts at this position, with nothing to take back
+    private void Rebuild() {
+        RebuildPieces();
+        keyHistory[0] = zobristKey;
+        historySize = 1;
+        halfmoveClock = 0;
+        undoSize = 0;
+    }
+
+    // Recomputes the bitboards and the key from board
+    private void RebuildPieces() {
+        java.util.Arrays.fill(pieces, 0);
+        java.util.Arrays.fill(colors, 0);
+        occupied = 0;
+        zobristKey = StateKey();
+        for (int square = 0; square < 64; square++) {
+            mirror[square] = board[square >> 3][square & 7];
+            Toggle(square, mirror[square]);
+        }
     }
 
     private void SetupBoard() {
@@ -24,35 +468,40 @@ public class ChessBoard {
         }
         // Set up black pieces (top of board)
         // Back row (row 0)
-        board[0][0] = new ChessPiece("Rook", "black");
-        board[0][1] = new ChessPiece("Knight", "black");
-        board[0][2] = new ChessPiece("Bishop", "black");
-        board[0][3] = new ChessPiece("Queen", "black");
-        board[0][4] = new ChessPiece("King", "black");
-        board[0][5] = new ChessPiece("Bishop", "black");
-        board[0][6] = new ChessPiece("Knight", "black");
-        board[0][7] = new ChessPiece("Rook", "black");
+        board[0][0] = ChessPiece.of(PieceType.ROOK, Color.BLACK);
+        board[0][1] = ChessPiece.of(PieceType.KNIGHT, Color.BLACK);
+        board[0][2] = ChessPiece.of(PieceType.BISHOP, Color.BLACK);
+        board[0][3] = ChessPiece.of(PieceType.QUEEN, Color.BLACK);
+        board[0][4] = ChessPiece.of(PieceType.KING, Color.BLACK);
+        board[0][5] = ChessPiece.of(PieceType.BISHOP, Color.BLACK);
+        board[0][6] = ChessPiece.of(PieceType.KNIGHT, Color.BLACK);
+        board[0][7] = ChessPiece.of(PieceType.ROOK, Color.BLACK);
 
         // Black pawns (row 1)
         for (int col = 0; col < 8; col++) {
-            board[1][col] = new ChessPiece("Pawn", "black");
+            board[1][col] = ChessPiece.of(PieceType.PAWN, Color.BLACK);
         }
 
         // Set up white pieces (bottom of board)
         // White pawns (row 6)
         for (int col = 0; col < 8; col++) {
-            board[6][col] = new ChessPiece("Pawn", "white");
+            board[6][col] = ChessPiece.of(PieceType.PAWN, Color.WHITE);
         }
 
         // Back row (row 7)
-        board[7][0] = new ChessPiece("Rook", "white");
-        board[7][1] = new ChessPiece("Knight", "white");
-        board[7][2] = new ChessPiece("Bishop", "white");
-        board[7][3] = new ChessPiece("Queen", "white");
-        board[7][4] = new ChessPiece("King", "white");
-        board[7][5] = new ChessPiece("Bishop", "white");
-        board[7][6] = new ChessPiece("Knight", "white");
-        board[7][7] = new ChessPiece("Rook", "white");
+        board[7][0] = ChessPiece.of(PieceType.ROOK, Color.WHITE);
+        board[7][1] = ChessPiece.of(PieceType.KNIGHT, Color.WHITE);
+        board[7][2] = ChessPiece.of(PieceType.BISHOP, Color.WHITE);
+        board[7][3] = ChessPiece.of(PieceType.QUEEN, Color.WHITE);
+        board[7][4] = ChessPiece.of(PieceType.KING, Color.WHITE);
+        board[7][5] = ChessPiece.of(PieceType.BISHOP, Color.WHITE);
+        board[7][6] = ChessPiece.of(PieceType.KNIGHT, Color.WHITE);
+        board[7][7] = ChessPiece.of(PieceType.ROOK, Color.WHITE);
+
+        sideToMove = Color.WHITE;
+        castlingRights = ALL_CASTLING;
+        enPassantSquare = -1;
+        Rebuild();
     }
 
     public void PrintBoard() {
@@ -27,6 +27,20 @@ public class ChessMove {
     public String disambiguationFile;  // File used for disambiguation (if any)
     public String disambiguationRank;  // Rank used for disambiguation (if any)
 
+    /**
+     * The color field as a Color, null if it is not "white" or "black".
+     */
+    public Color getColor() {
+        return Color.of(color);
+    }
+
+    /**
+     * The pieceType field as a PieceType, null if the move did not parse.
+     */
+    public PieceType getPieceType() {
+        return PieceType.of(pieceType);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -1,36 +1,64 @@
 package Model;
 
-public class ChessPiece {
-    private final String type;    // pawn, knight, bishop, rook, queen, king
-    private  final String color;   // white or black
-    private boolean isMoved; // for king and rooks (castling) and pawns
-    public ChessPiece(String type, String color) {
+/**
+ * An immutable piece. Pieces of the same type and color are interchangeable, so the board uses the
+ * shared instances from of(); whether a king or rook has moved is the board's castling rights.
+ */
+public final class ChessPiece {
+    private static final ChessPiece[] SHARED = new ChessPiece[12];
+
+    static {
+        for (Color color : Color.values()) {
+            for (PieceType type : PieceType.values()) {
+                SHARED[color.ordinal() * 6 + type.ordinal()] = new ChessPiece(type, color);
+            }
+        }
+    }
+
+    private final PieceType type;    // pawn, knight, bishop, rook, queen, king
+    private  final Color color;   // white or black
+    public ChessPiece(PieceType type, Color color) {
         this.type = type;
         this.color = color;
-        this.isMoved = false;
     }
-    public String getType() {
+    /**
+     * A piece from its names, e.g. ("Knight", "white"). An unknown name leaves that part null.
+     */
+    public ChessPiece(String type, String color) {
+        this(PieceType.of(type), Color.of(color));
+    }
+
+    /**
+     * The shared piece of that type and color.
+     */
+    public static ChessPiece of(PieceType type, Color color) {
+        return SHARED[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    public PieceType getPieceType() {
         return type;
     }
-    public String getColor() {
+    public Color getPieceColor() {
         return color;
     }
-    public boolean IsMoved() {
-        return isMoved;
+    public String getType() {
+        return type != null ? type.toString() : null;
     }
-    public void SetMoved() {
-        isMoved = true;
+    public String getColor() {
+        return color != null ? color.toString() : null;
     }
     public String getSymbol() {
+        if (type == null) {
+            return ". ";
+        }
+        boolean white = color == Color.WHITE;
         return switch (this.type) {
-            case "Pawn" -> this.color.equals("white") ? "♙ " : "♟ "; // Pawn
-            case "King" -> this.color.equals("white") ? "♔ " : "♚ "; // King
-            case "Queen" -> this.color.equals("white") ? "♕ " : "♛ "; // Queen
-            case "Bishop" -> this.color.equals("white") ? "♗ " : "♝ "; // Bishop
-            case "Knight" -> this.color.equals("white") ? "♘ " : "♞ "; // Knight
-            case "Rook" -> this.color.equals("white") ? "♖ " : "♜ ";
-            default -> // Rook
-                    ". ";
+            case PAWN -> white ? "♙ " : "♟ "; // Pawn
+            case KING -> white ? "♔ " : "♚ "; // King
+            case QUEEN -> white ? "♕ " : "♛ "; // Queen
+            case BISHOP -> white ? "♗ " : "♝ "; // Bishop
+            case KNIGHT -> white ? "♘ " : "♞ "; // Knight
+            case ROOK -> white ? "♖ " : "♜ "; // Rook
         };
     }
 }
@@ -0,0 +1,38 @@
+package Model;
+
+/**
+ * Side of a piece or a move. toString() gives the name the rest of the code uses, "white" or "black".
+ */
+public enum Color {
+    WHITE("white"),
+    BLACK("black");
+
+    private final String name;
+
+    Color(String name) {
+        this.name = name;
+    }
+
+    public Color opposite() {
+        return this == WHITE ? BLACK : WHITE;
+    }
+
+    /**
+     * @return the color with that name, or null if there is none
+     */
+    public static Color of(String name) {
+        if (name == null) {
+            return null;
+        }
+        return switch (name) {
+            case "white" -> WHITE;
+            case "black" -> BLACK;
+            default -> null;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
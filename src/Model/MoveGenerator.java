@@ -0,0 +1,224 @@
+package Model;
+
+/**
+ * Generates every legal move of the side to move, for checking the validation engine and for perft.
+ * <p>
+ * A move is an int: bits 0-5 the from-square, 6-11 the to-square (see Bitboards) and 12-14 the
+ * promotion piece (PieceType ordinal + 1, 0 for none), ready for ChessBoard.MakeMove. Moves are only
+ * generated when they are legal: a pinned piece stays on its line, in check only moves that capture
+ * the checker or block it are made (only king moves in double check), and en passant is tried on the
+ * occupancy it leaves so a pawn pinned along the row is caught.
+ * The board's bitboards have to be in step with its array, see ChessBoard.Sync.
+ */
+public final class MoveGenerator {
+    // No position has more legal moves than this
+    public static final int MAX_MOVES = 256;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+    private static final PieceType[] OFFICERS = {PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN};
+
+    private MoveGenerator() {
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * @return the piece a pawn becomes, or null
+     */
+    public static PieceType promotion(int move) {
+        int code = move >>> 12 & 7;
+        return code == 0 ? null : PIECE_TYPES[code - 1];
+    }
+
+    /**
+     * The move in coordinate notation, e.g. "e2e4" or "e7e8q".
+     */
+    public static String toUci(int move) {
+        PieceType promotion = promotion(move);
+        return Bitboards.name(from(move)) + Bitboards.name(to(move))
+                + (promotion == null ? "" : String.valueOf("pnbrqk".charAt(promotion.ordinal())));
+    }
+
+    /**
+     * Writes the legal moves of the side to move into moves, which needs room for MAX_MOVES.
+     *
+     * @return how many moves were written
+     */
+    public static int generateLegal(ChessBoard board, int[] moves) {
+        Color us = board.getSideToMove();
+        Color them = us.opposite();
+        long ours = board.getOccupancy(us);
+        long theirs = board.getOccupancy(them);
+        long occupied = board.getOccupied();
+        int king = Long.numberOfTrailingZeros(board.getPieces(us, PieceType.KING));
+        int count = 0;
+
+        // King moves, checked with the king off the board so it cannot hide behind itself
+        long withoutKing = occupied ^ Bitboards.bit(king);
+        for (long targets = Bitboards.kingAttacks(king) & ~ours; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (attackers(board, to, them, withoutKing) == 0) {
+                moves[count++] = to << 6 | king;
+            }
+        }
+
+        long checkers = attackers(board, king, them, occupied);
+        if (Long.bitCount(checkers) > 1) {
+            return count;  // Only the king can get out of a double check
+        }
+        // The squares that take the checker or block it, every square if not in check
+        long evasions = checkers == 0 ? -1L : checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers));
+        long pinned = pinned(board, king, us, them, occupied);
+
+        for (PieceType type : OFFICERS) {
+            for (long pieces = board.getPieces(us, type); pieces != 0; pieces &= pieces - 1) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                long targets = switch (type) {
+                    case KNIGHT -> Bitboards.knightAttacks(from);
+                    case BISHOP -> Bitboards.bishopAttacks(from, occupied);
+                    case ROOK -> Bitboards.rookAttacks(from, occupied);
+                    default -> Bitboards.queenAttacks(from, occupied);
+                } & ~ours & evasions;
+                if ((pinned & Bitboards.bit(from)) != 0) {
+                    targets &= Bitboards.line(king, from);
+                }
+                for (; targets != 0; targets &= targets - 1) {
+                    moves[count++] = Long.numberOfTrailingZeros(targets) << 6 | from;
+                }
+            }
+        }
+
+        count = pawnMoves(board, moves, count, us, king, theirs, occupied, evasions, pinned);
+
+        if (checkers == 0) {
+            count = castlings(board, moves, count, us, king, occupied);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the leaf positions of the move tree to the given depth, the standard test of a move
+     * generator against published numbers. The board is left as it was.
+     */
+    public static long perft(ChessBoard board, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return perft(board, depth, new int[depth][MAX_MOVES]);
+    }
+
+    private static long perft(ChessBoard board, int depth, int[][] buffers) {
+        int[] moves = buffers[depth - 1];
+        int count = generateLegal(board, moves);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.MakeMove(from(moves[i]), to(moves[i]), promotion(moves[i]));
+            nodes += perft(board, depth - 1, buffers);
+            board.UnmakeMove();
+        }
+        return nodes;
+    }
+
+    private static int pawnMoves(ChessBoard board, int[] moves, int count, Color us, int king, long theirs,
+                                 long occupied, long evasions, long pinned) {
+        boolean white = us == Color.WHITE;
+        int forward = white ? -8 : 8;
+        int startRow = white ? 6 : 1;
+        int lastRow = white ? 0 : 7;
+        int enPassant = board.getEnPassantSquare();
+
+        for (long pawns = board.getPieces(us, PieceType.PAWN); pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long targets = Bitboards.pawnAttacks(us, from) & theirs;
+            int oneStep = from + forward;
+            if ((occupied & Bitboards.bit(oneStep)) == 0) {
+                targets |= Bitboards.bit(oneStep);
+                int twoSteps = oneStep + forward;
+                if (from >> 3 == startRow && (occupied & Bitboards.bit(twoSteps)) == 0) {
+                    targets |= Bitboards.bit(twoSteps);
+                }
+            }
+            targets &= evasions;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                targets &= Bitboards.line(king, from);
+            }
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (to >> 3 == lastRow) {
+                    for (PieceType promotion : PROMOTIONS) {
+                        moves[count++] = (promotion.ordinal() + 1) << 12 | to << 6 | from;
+                    }
+                } else {
+                    moves[count++] = to << 6 | from;
+                }
+            }
+
+            if (enPassant >= 0 && (Bitboards.pawnAttacks(us, from) & Bitboards.bit(enPassant)) != 0) {
+                // Two pawns leave the row at once, so pins and checks are simplest tried on the result
+                int captured = (from & ~7) | (enPassant & 7);
+                long after = occupied ^ Bitboards.bit(from) ^ Bitboards.bit(captured) | Bitboards.bit(enPassant);
+                if ((attackers(board, king, us.opposite(), after) & ~Bitboards.bit(captured)) == 0) {
+                    moves[count++] = enPassant << 6 | from;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int castlings(ChessBoard board, int[] moves, int count, Color us, int king, long occupied) {
+        int row = us == Color.WHITE ? 7 : 0;
+        int kingSide = us == Color.WHITE ? ChessBoard.WHITE_KINGSIDE : ChessBoard.BLACK_KINGSIDE;
+        int queenSide = us == Color.WHITE ? ChessBoard.WHITE_QUEENSIDE : ChessBoard.BLACK_QUEENSIDE;
+        if (king != Bitboards.square(row, 4)) {
+            return count;
+        }
+        long rooks = board.getPieces(us, PieceType.ROOK);
+        Color them = us.opposite();
+        if ((board.getCastlingRights() & kingSide) != 0 && (rooks & Bitboards.bit(Bitboards.square(row, 7))) != 0
+                && (Bitboards.between(king, Bitboards.square(row, 7)) & occupied) == 0
+                && attackers(board, king + 1, them, occupied) == 0 && attackers(board, king + 2, them, occupied) == 0) {
+            moves[count++] = (king + 2) << 6 | king;
+        }
+        if ((board.getCastlingRights() & queenSide) != 0 && (rooks & Bitboards.bit(Bitboards.square(row, 0))) != 0
+                && (Bitboards.between(king, Bitboards.square(row, 0)) & occupied) == 0
+                && attackers(board, king - 1, them, occupied) == 0 && attackers(board, king - 2, them, occupied) == 0) {
+            moves[count++] = (king - 2) << 6 | king;
+        }
+        return count;
+    }
+
+    // The pieces of ours that are the only thing between our king and one of their sliders
+    private static long pinned(ChessBoard board, int king, Color us, Color them, long occupied) {
+        long queens = board.getPieces(them, PieceType.QUEEN);
+        long snipers = Bitboards.rookRays(king) & (board.getPieces(them, PieceType.ROOK) | queens)
+                | Bitboards.bishopRays(king) & (board.getPieces(them, PieceType.BISHOP) | queens);
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.getOccupancy(us);
+            }
+        }
+        return pinned;
+    }
+
+    // The pieces of the given color that attack the square, with the sliders seeing through the given occupancy
+    private static long attackers(ChessBoard board, int square, Color by, long occupied) {
+        long queens = board.getPieces(by, PieceType.QUEEN);
+        return Bitboards.pawnAttacks(by.opposite(), square) & board.getPieces(by, PieceType.PAWN)
+                | Bitboards.knightAttacks(square) & board.getPieces(by, PieceType.KNIGHT)
+                | Bitboards.kingAttacks(square) & board.getPieces(by, PieceType.KING)
+                | Bitboards.rookAttacks(square, occupied) & (board.getPieces(by, PieceType.ROOK) | queens)
+                | Bitboards.bishopAttacks(square, occupied) & (board.getPieces(by, PieceType.BISHOP) | queens);
+    }
+}
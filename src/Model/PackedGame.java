@@ -0,0 +1,62 @@
+package Model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game's moves as PackedMove ints, about 4 bytes a ply instead of a ChessMove object.
+ * The SAN is not stored: it is written back from the packed move when asked for, except for the
+ * few notations PackedMove.toSan cannot give back exactly ("0-0", tokens that are not SAN moves),
+ * which are kept by ply.
+ */
+public class PackedGame {
+    private final int[] moves;
+    private final Map<Integer, String> notations;
+
+    /**
+     * @param moves     the packed moves, white's first
+     * @param notations the notation of each ply whose SAN PackedMove.toSan does not give back
+     */
+    public PackedGame(int[] moves, Map<Integer, String> notations) {
+        this.moves = moves;
+        this.notations = notations;
+    }
+
+    public int size() {
+        return moves.length;
+    }
+
+    public int getMove(int ply) {
+        return moves[ply];
+    }
+
+    public String getSan(int ply) {
+        String notation = notations.get(ply);
+        return notation != null ? notation : PackedMove.toSan(moves[ply]);
+    }
+
+    /**
+     * The moves as SAN, each String made when it is read.
+     */
+    public List<String> getSanMoves() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int ply) {
+                return getSan(ply);
+            }
+
+            @Override
+            public int size() {
+                return moves.length;
+            }
+        };
+    }
+
+    /**
+     * Writes a ply into the given ChessMove, which can be reused from one ply to the next.
+     */
+    public ChessMove toChessMove(int ply, ChessMove move) {
+        return PackedMove.unpack(moves[ply], getSan(ply), move);
+    }
+}
@@ -0,0 +1,144 @@
+package Model;
+
+/**
+ * A ChessMove packed into one int, so a game is an int[] instead of a list of objects.
+ * <pre>
+ * bits  0-2  to column        bits 14-16 piece (0 = not a SAN move, then 1-6 Pawn..King)
+ * bits  3-5  to row           bits 17-19 promotion piece (0 = none)
+ * bits  6-8  from column      bit  20    capture
+ * bit   9    from column set  bit  21    check
+ * bits 10-12 from row         bit  22    checkmate
+ * bit  13    from row set     bit  23    castling
+ *                             bit  24    white to move
+ * </pre>
+ * A from column or row is set when the SAN disambiguates it, or for castling.
+ */
+public final class PackedMove {
+    private static final String[] PIECES = {null, "Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+    private static final String PIECE_LETTERS = " PNBRQK";
+    private static final String[] FILES = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    private static final String[] RANKS = {"8", "7", "6", "5", "4", "3", "2", "1"}; // by row
+
+    private static final int FROM_COL_SET = 1 << 9;
+    private static final int FROM_ROW_SET = 1 << 13;
+    private static final int CAPTURE = 1 << 20;
+    private static final int CHECK = 1 << 21;
+    private static final int CHECKMATE = 1 << 22;
+    private static final int CASTLING = 1 << 23;
+    private static final int WHITE = 1 << 24;
+
+    private PackedMove() {
+    }
+
+    public static int pack(ChessMove move) {
+        int piece = pieceCode(move.pieceType);
+        int packed = move.toCol & 7 | (move.toRow & 7) << 3 | piece << 14 | pieceCode(move.promotionPiece) << 17;
+        // Only moves that parsed have a meaningful from-square (-1 when it is left to the controller)
+        if (piece != 0 && move.fromCol >= 0) {
+            packed |= FROM_COL_SET | move.fromCol << 6;
+        }
+        if (piece != 0 && move.fromRow >= 0) {
+            packed |= FROM_ROW_SET | move.fromRow << 10;
+        }
+        if (move.isCapture) packed |= CAPTURE;
+        if (move.isCheck) packed |= CHECK;
+        if (move.isCheckmate) packed |= CHECKMATE;
+        if (move.isCastling) packed |= CASTLING;
+        if ("white".equals(move.color)) packed |= WHITE;
+        return packed;
+    }
+
+    /**
+     * Writes the move into a ChessMove, every field included, so one scratch instance can be reused.
+     */
+    public static ChessMove unpack(int packed, String notation, ChessMove move) {
+        boolean castling = (packed & CASTLING) != 0;
+        boolean parsed = pieceCode(packed) != 0;
+        move.notation = notation;
+        move.color = isWhite(packed) ? "white" : "black";
+        move.pieceType = pieceType(packed);
+        move.toCol = toCol(packed);
+        move.toRow = toRow(packed);
+        // A token that did not parse keeps ChessMove's defaults, like ChessMovesParser leaves it
+        move.fromCol = (packed & FROM_COL_SET) != 0 ? packed >>> 6 & 7 : parsed ? -1 : 0;
+        move.fromRow = (packed & FROM_ROW_SET) != 0 ? packed >>> 10 & 7 : parsed ? -1 : 0;
+        move.isCapture = (packed & CAPTURE) != 0;
+        move.isCheck = (packed & CHECK) != 0;
+        move.isCheckmate = (packed & CHECKMATE) != 0;
+        move.isCastling = castling;
+        move.isPromotion = (packed >>> 17 & 7) != 0;
+        move.promotionPiece = PIECES[packed >>> 17 & 7];
+        move.disambiguationFile = (packed & FROM_COL_SET) != 0 && !castling ? FILES[packed >>> 6 & 7] : null;
+        move.disambiguationRank = (packed & FROM_ROW_SET) != 0 && !castling ? RANKS[packed >>> 10 & 7] : null;
+        return move;
+    }
+
+    /**
+     * The SAN the move was parsed from, written the standard way (e.g. "0-0" comes back as "O-O").
+     *
+     * @return null if the move is not a SAN move
+     */
+    public static String toSan(int packed) {
+        int piece = pieceCode(packed);
+        if (piece == 0) {
+            return null;
+        }
+        StringBuilder san = new StringBuilder(8);
+        if ((packed & CASTLING) != 0) {
+            san.append(toCol(packed) == 2 ? "O-O-O" : "O-O");
+        } else {
+            if (piece != 1) {
+                san.append(PIECE_LETTERS.charAt(piece));
+            }
+            if ((packed & FROM_COL_SET) != 0) san.append(FILES[packed >>> 6 & 7]);
+            if ((packed & FROM_ROW_SET) != 0) san.append(RANKS[packed >>> 10 & 7]);
+            if ((packed & CAPTURE) != 0) san.append('x');
+            san.append(FILES[toCol(packed)]).append(RANKS[toRow(packed)]);
+            int promotion = packed >>> 17 & 7;
+            if (promotion != 0) {
+                san.append('=').append(PIECE_LETTERS.charAt(promotion));
+            }
+        }
+        if ((packed & CHECK) != 0) san.append('+');
+        if ((packed & CHECKMATE) != 0) san.append('#');
+        return san.toString();
+    }
+
+    public static int toRow(int packed) {
+        return packed >>> 3 & 7;
+    }
+
+    public static int toCol(int packed) {
+        return packed & 7;
+    }
+
+    public static boolean isWhite(int packed) {
+        return (packed & WHITE) != 0;
+    }
+
+    /**
+     * "Pawn", "Knight", ... or null if the move is not a SAN move.
+     */
+    public static String pieceType(int packed) {
+        return PIECES[pieceCode(packed)];
+    }
+
+    private static int pieceCode(int packed) {
+        return packed >>> 14 & 7;
+    }
+
+    private static int pieceCode(String pieceType) {
+        if (pieceType == null) {
+            return 0;
+        }
+        return switch (pieceType) {
+            case "Pawn" -> 1;
+            case "Knight" -> 2;
+            case "Bishop" -> 3;
+            case "Rook" -> 4;
+            case "Queen" -> 5;
+            case "King" -> 6;
+            default -> 0;
+        };
+    }
+}
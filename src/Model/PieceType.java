@@ -0,0 +1,42 @@
+package Model;
+
+/**
+ * Kind of a piece. toString() gives the name the rest of the code uses, "Pawn" to "King".
+ */
+public enum PieceType {
+    PAWN("Pawn"),
+    KNIGHT("Knight"),
+    BISHOP("Bishop"),
+    ROOK("Rook"),
+    QUEEN("Queen"),
+    KING("King");
+
+    private final String name;
+
+    PieceType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the piece type with that name, or null if there is none
+     */
+    public static PieceType of(String name) {
+        if (name == null) {
+            return null;
+        }
+        return switch (name) {
+            case "Pawn" -> PAWN;
+            case "Knight" -> KNIGHT;
+            case "Bishop" -> BISHOP;
+            case "Rook" -> ROOK;
+            case "Queen" -> QUEEN;
+            case "King" -> KING;
+            default -> null;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,54 @@
+package Model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing: a position's key is the XOR of the keys of its pieces on their
+ * squares, the side to move, the castling rights and the en passant file. A move changes the key
+ * by XOR-ing out what it removes and XOR-ing in what it adds.
+ * The keys come from a fixed seed, so a position has the same key in every run.
+ */
+public final class Zobrist {
+    private static final long[][] PIECES = new long[12][64];  // by ChessBoard piece index, then square
+    private static final long[] CASTLING = new long[16];      // by rights mask
+    private static final long[] EN_PASSANT = new long[8];     // by file
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DE_2024L);
+        for (long[] squares : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+        for (int rights = 1; rights < 16; rights++) {
+            CASTLING[rights] = random.nextLong();
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int pieceIndex, int square) {
+        return PIECES[pieceIndex][square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * @param square the en passant square, or -1 for none
+     */
+    public static long enPassant(int square) {
+        return square < 0 ? 0 : EN_PASSANT[square & 7];
+    }
+
+    public static long side(Color sideToMove) {
+        return sideToMove == Color.BLACK ? BLACK_TO_MOVE : 0;
+    }
+}
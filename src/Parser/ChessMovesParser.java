@@ -1,13 +1,17 @@
 package Parser;
 
 import Model.ChessMove;
+import Model.PackedGame;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 public class ChessMovesParser {
+    // SAN strings parsed so far, so a repeated "Nf3" is a lookup instead of lexing it again
+    private static final SanTable sanTable = new SanTable(1 << 16, ChessMovesParser::parseSan);
 
    static public List<ChessMove> parse(List<String> moves) {
         boolean isWhiteToMove = true;
@@ -24,107 +28,46 @@ public class ChessMovesParser {
         return chessMoves;
     }
 
-    public static ChessMove parseMove(String moveText, boolean isWhiteToMove) {
-        ChessMove move = new ChessMove();
-        move.notation = moveText;
-        move.color = isWhiteToMove ? "white" : "black";
-
-        // Handle castling
-        if (moveText.matches("O-O(-O)?|0-0(-0)?")) {
-            return parseCastling(moveText, isWhiteToMove);
-        }
-
-        // Extract check/checkmate indicators
-        move.isCheck = moveText.contains("+") ;
-        move.isCheckmate = moveText.contains("#") ;
-        String cleanMove = moveText.replaceAll("[+#]", "");
-
-        // Parse regular moves using regex
-        // Pattern matches: 1 [piece] 2 [from file] 3 [from rank] 4 [capture] 5 [destination] 6[promotion 7 (group 6 is full "=Q", group 7 is just "Q")]
-        Pattern pattern = Pattern.compile("([KQRBN])?([a-h])?([1-8])?(x)?([a-h][1-8])(=([QRBN]))?");
-        Matcher matcher = pattern.matcher(cleanMove);
-
-        if (matcher.matches()) {
-
-
-
-            // Extract piece type
-            String pieceChar = matcher.group(1);
-            move.pieceType = pieceChar == null ? "Pawn" : convertPieceCode(pieceChar);
-
-            // Extract capture flag
-            move.isCapture = matcher.group(4) != null;
-
-
-
-
-
-
-            // Extract destination square
-            String destination = matcher.group(5);
-            move.toCol = fileToColumn(destination.charAt(0));
-            move.toRow = rankToRow(destination.charAt(1));
-
-            // Extract promotion
-            move.isPromotion = matcher.group(6) != null;
-            move.promotionPiece = move.isPromotion ? convertPieceCode(String.valueOf(matcher.group(7))) :null;
-
-            // Extract origin hints (for disambiguation)
-            String disambiguationFile = matcher.group(2);
-            String disambiguationRank = matcher.group(3);
-
-            // Set known origin coordinates or mark for resolution
-            move.fromCol = disambiguationFile != null ? fileToColumn(disambiguationFile.charAt(0)) : -1;
-            move.fromRow = disambiguationRank != null ? rankToRow(disambiguationRank.charAt(0)) : -1;
+    /**
+     * Same as parse, but the game is kept packed: an int per move instead of a ChessMove.
+     */
+    public static PackedGame parsePacked(List<String> moves) {
+        boolean isWhiteToMove = true;
+        int[] packed = new int[moves.size()];
+        Map<Integer, String> notations = Map.of();
+        int ply = 0;
 
-            // Special handling for pawn captures that always specify the file
-            if (move.pieceType.equals("Pawn") && move.isCapture && disambiguationFile != null) {
-                move.fromCol = fileToColumn(disambiguationFile.charAt(0));
-                // Row will be resolved later using the board state
+        for (String moveText : moves) {
+            if (!moveText.isEmpty()) {
+                SanTable.Token token = sanTable.get(moveText, isWhiteToMove);
+                if (!token.isPackedSanExact) {
+                    if (notations.isEmpty()) {
+                        notations = new HashMap<>();
+                    }
+                    notations.put(ply, moveText);
+                }
+                packed[ply++] = token.packed;
+                isWhiteToMove = !isWhiteToMove;
             }
-            move.disambiguationFile = disambiguationFile;
-            move.disambiguationRank = disambiguationRank;
         }
-
-        return move;
+        return new PackedGame(ply == packed.length ? packed : Arrays.copyOf(packed, ply), notations);
     }
 
-    private static ChessMove parseCastling(String moveText, boolean isWhiteToMove) {
-        ChessMove move = new ChessMove();
-        move.notation = moveText;
-        move.color = isWhiteToMove ? "white" : "black";
-        move.pieceType = "King";
-        move.isCastling = true;
-
-        // Set source and destination coordinates based on castling type
-        boolean isQueenside = moveText.contains("-O-O") || moveText.contains("-0-0");
-        int kingRow = isWhiteToMove ? 7 : 0;  // 7 for white (bottom), 0 for black (top)
-
-        move.fromRow = kingRow;
-        move.fromCol = 4;  // King always starts at e1 (white) or e8 (black)
-        move.toRow = kingRow;
-        move.toCol = isQueenside ? 2 : 6;  // c-file for queenside, g-file for kingside
-
-        return move;
-    }
-
-    // Helper methods to convert between chess notation and array indices
-    private static int fileToColumn(char file) {
-        return file - 'a';  // 'a' -> 0, 'b' -> 1, etc.
+    public static ChessMove parseMove(String moveText, boolean isWhiteToMove) {
+        return sanTable.get(moveText, isWhiteToMove).toChessMove();
     }
 
-    private static int rankToRow(char rank) {
-        return 8 - Character.getNumericValue(rank);  // '1' -> 7, '2' -> 6, etc.
+    /**
+     * Same as parseMove, but overwrites every field of the given move instead of making a new one.
+     */
+    public static ChessMove parseMove(String moveText, boolean isWhiteToMove, ChessMove move) {
+        return sanTable.get(moveText, isWhiteToMove).copyTo(move);
     }
 
-    private static String convertPieceCode(String code) {
-        return switch (code) {
-            case "K" -> "King";
-            case "Q" -> "Queen";
-            case "R" -> "Rook";
-            case "B" -> "Bishop";
-            case "N" -> "Knight";
-            default -> "Pawn";
-        };
+    private static ChessMove parseSan(String moveText, boolean isWhiteToMove) {
+        ChessMove move = new ChessMove();
+        move.notation = moveText;
+        SanLexer.lex(moveText, 0, moveText.length(), isWhiteToMove, move);
+        return move;
     }
-}
\ No newline at end of file
+}
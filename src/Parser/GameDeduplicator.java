@@ -0,0 +1,136 @@
+package Parser;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detects games that were already seen, so merged corpora only convert and evaluate each game once.
+ * <p>
+ * A game is reduced to a 64-bit fingerprint of its normalized SAN sequence (check marks, annotation
+ * glyphs and zero-castling spelled differently by different sources are ignored), optionally mixed
+ * with some header tags. Fingerprints are kept either in an exact concurrent set or, for hundreds of
+ * millions of games, in a Bloom filter that uses a fixed amount of memory but may report a small
+ * fraction of new games as duplicates. One instance can be shared by all parser threads.
+ */
+public class GameDeduplicator {
+    private final Set<Long> seen;      // exact mode
+    private final AtomicLongArray bits; // Bloom filter mode
+    private final long bitCount;
+    private final int hashCount;
+
+    private final int[] headerTags;
+    private final AtomicLong duplicates = new AtomicLong();
+
+    private GameDeduplicator(Set<Long> seen, long bitCount, int hashCount, int[] headerTags) {
+        this.seen = seen;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.bits = seen == null ? new AtomicLongArray((int) ((bitCount + 63) >>> 6)) : null;
+        this.headerTags = headerTags;
+    }
+
+    /**
+     * Exact detection with a concurrent set of fingerprints (16 bytes and more per game).
+     *
+     * @param headerTags tag ids (see PGNTag) that must also match, e.g. PGNTag.WHITE, PGNTag.BLACK
+     */
+    public static GameDeduplicator exact(int... headerTags) {
+        return new GameDeduplicator(ConcurrentHashMap.newKeySet(), 0, 0, headerTags);
+    }
+
+    /**
+     * Bloom filter sized for the expected number of games and false positive rate,
+     * e.g. 300 million games at 1% take about 360 MB.
+     *
+     * @param headerTags tag ids (see PGNTag) that must also match
+     */
+    public static GameDeduplicator bloom(long expectedGames, double falsePositiveRate, int... headerTags) {
+        double ln2 = Math.log(2);
+        long bitCount = (long) Math.ceil(-expectedGames * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bitCount = Math.max(64, Math.min(bitCount, (long) Integer.MAX_VALUE * 64));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedGames * ln2));
+        return new GameDeduplicator(null, bitCount, hashCount, headerTags);
+    }
+
+    /**
+     * Records the game and tells whether it had been recorded before.
+     */
+    public boolean isDuplicate(GameHeaders headers, List<String> moves) {
+        long fingerprint = fingerprint(headers, moves);
+        boolean duplicate = seen != null ? !seen.add(fingerprint) : !addToFilter(fingerprint);
+        if (duplicate) {
+            duplicates.incrementAndGet();
+        }
+        return duplicate;
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * 64-bit fingerprint of the normalized moves and the configured header values.
+     */
+    long fingerprint(GameHeaders headers, List<String> moves) {
+        long hash = 0xcbf29ce484222325L;
+        for (String move : moves) {
+            for (int i = 0; i < move.length(); i++) {
+                char c = move.charAt(i);
+                if (c == '+' || c == '#' || c == '!' || c == '?') {
+                    continue;
+                }
+                hash = (hash ^ (c == '0' ? 'O' : c)) * 0x100000001b3L;
+            }
+            hash = (hash ^ ' ') * 0x100000001b3L;
+        }
+        for (int tag : headerTags) {
+            String value = headers.get(tag);
+            hash = (hash ^ tag) * 0x100000001b3L;
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+                }
+            }
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Sets the game's bits.
+     *
+     * @return true if at least one bit was not set yet, i.e. the game is new
+     */
+    private boolean addToFilter(long fingerprint) {
+        // Double hashing: the k bit positions are h1 + i * h2
+        long h1 = fingerprint;
+        long h2 = mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    added = true;
+                    break;
+                }
+                current = bits.get(word);
+            }
+        }
+        return added;
+    }
+
+    // Final avalanche step of MurmurHash3, spreads FNV's weak low bits
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
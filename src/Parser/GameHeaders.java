@@ -0,0 +1,118 @@
+package Parser;
+
+import java.util.Arrays;
+
+/**
+ * The header tags of one game in a compact form: parallel arrays of tag ids and values,
+ * in the order they appeared in the file. Values are interned in a shared pool, so a
+ * game only costs its two small arrays no matter how long the event or player names are.
+ * A tag that got no id because the PGNTag registry is full has id -1 and its name in a
+ * third array, which only games with such tags have.
+ */
+public class GameHeaders {
+    public static final GameHeaders EMPTY = new GameHeaders(new short[0], new String[0], null);
+
+    // Shared across all parsers and threads; bounded so unique values cannot grow it forever
+    private static final InternPool VALUES = new InternPool(1 << 20);
+
+    private final short[] tagIds;
+    private final String[] values;
+    // Names of the tags without an id, null if every tag has one
+    private final String[] unregisteredNames;
+
+    private GameHeaders(short[] tagIds, String[] values, String[] unregisteredNames) {
+        this.tagIds = tagIds;
+        this.values = values;
+        this.unregisteredNames = unregisteredNames;
+    }
+
+    /**
+     * Value of the tag, or null if the game does not have it.
+     */
+    public String get(int tagId) {
+        for (int i = 0; i < tagIds.length; i++) {
+            if (tagIds[i] == tagId) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value of the tag by name, e.g. get("WhiteElo"), or null if the game does not have it.
+     */
+    public String get(String tagName) {
+        int id = PGNTag.find(tagName);
+        if (id >= 0) {
+            return get(id);
+        }
+        if (unregisteredNames != null) {
+            for (int i = 0; i < tagIds.length; i++) {
+                if (tagName.equals(unregisteredNames[i])) {
+                    return values[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return tagIds.length;
+    }
+
+    public String tagName(int index) {
+        return tagIds[index] < 0 ? unregisteredNames[index] : PGNTag.nameOf(tagIds[index]);
+    }
+
+    public String value(int index) {
+        return values[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tagIds.length; i++) {
+            sb.append('[').append(tagName(i)).append(" \"").append(values[i]).append("\"]\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Collects the tags of one header block. Reusable: build() copies and resets it.
+     */
+    public static class Builder {
+        private short[] tagIds = new short[8];
+        private String[] values = new String[8];
+        private String[] unregisteredNames = new String[8];
+        private boolean hasUnregistered = false;
+        private int size = 0;
+
+        public Builder add(String tagName, String value) {
+            if (size == tagIds.length) {
+                tagIds = Arrays.copyOf(tagIds, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                unregisteredNames = Arrays.copyOf(unregisteredNames, size * 2);
+            }
+            int id = PGNTag.idOf(tagName);
+            tagIds[size] = (short) id;
+            unregisteredNames[size] = id < 0 ? tagName : null;
+            hasUnregistered |= id < 0;
+            values[size] = VALUES.intern(value);
+            size++;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public GameHeaders build() {
+            GameHeaders headers = size == 0 ? EMPTY
+                    : new GameHeaders(Arrays.copyOf(tagIds, size), Arrays.copyOf(values, size),
+                            hasUnregistered ? Arrays.copyOf(unregisteredNames, size) : null);
+            size = 0;
+            hasUnregistered = false;
+            return headers;
+        }
+    }
+}
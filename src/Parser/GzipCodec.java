@@ -0,0 +1,334 @@
+package Parser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Gzip (.gz, .bgz) on top of the JDK's Inflater. Files made of several gzip members are read
+ * member after member, like `cat a.gz b.gz` produces.
+ * <p>
+ * BGZF files (written by bgzip) record the size of every member in its header, so their member
+ * boundaries are known without inflating anything. Those files are cut into batches of whole
+ * members that are inflated in parallel and handed out in file order. Other gzip files can only
+ * be inflated sequentially.
+ */
+public class GzipCodec implements PGNCodec {
+    // Compressed bytes inflated by one task unless set otherwise, BGZF members are at most 64 KB each
+    private static final long DEFAULT_BATCH_SIZE = 4L << 20;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final long batchSize;
+
+    public GzipCodec() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize compressed bytes a task inflates at least, a batch ends at the first member boundary after it
+     */
+    GzipCodec(long batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean accepts(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".bgz");
+    }
+
+    @Override
+    public InputStream open(Path path) throws IOException {
+        return new MemberStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    }
+
+    @Override
+    public InputStream open(Path path, int parallelism) throws IOException {
+        long[] batches = parallelism > 1 ? splitBatches(path) : null;
+        if (batches == null) {
+            return open(path);
+        }
+        return new ParallelStream(path, batches, parallelism);
+    }
+
+    /**
+     * Cuts a BGZF file into batches of whole members.
+     *
+     * @return the batch boundaries (first is 0, last is the file size), or null if the file is not BGZF
+     */
+    long[] splitBatches(Path path) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        try (FileChannel channel = FileChannel.open(path)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(18).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            long offset = 0;
+            long batchStart = 0;
+            while (offset < size) {
+                header.clear();
+                while (header.hasRemaining() && channel.read(header, offset + header.position()) >= 0) {
+                    // read the fixed part of the header and the BGZF extra field
+                }
+                // ID1 ID2 CM FLG, then XLEN = 6 and the "BC" subfield with BSIZE = member size - 1
+                if (header.position() < 18 || (header.get(0) & 0xFF) != 0x1f || (header.get(1) & 0xFF) != 0x8b
+                        || (header.get(3) & FEXTRA) == 0 || header.getShort(10) != 6
+                        || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2) {
+                    return null;
+                }
+                offset += (header.getShort(16) & 0xFFFF) + 1;
+                if (offset - batchStart >= batchSize) {
+                    boundaries.add(offset);
+                    batchStart = offset;
+                }
+            }
+            if (offset != size) {
+                return null;
+            }
+            if (batchStart != size) {
+                boundaries.add(size);
+            }
+        }
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Inflates consecutive gzip members, checking each one's CRC and size.
+     */
+    private static final class MemberStream extends InputStream {
+        private final PushbackInputStream in;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] input = new byte[1 << 16];
+        private int inputLength = 0;
+        private boolean inMember = false;
+        private boolean eof = false;
+
+        MemberStream(InputStream in) {
+            this.in = new PushbackInputStream(in, input.length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (!eof) {
+                if (!inMember) {
+                    if (!readHeader()) {
+                        eof = true;
+                        break;
+                    }
+                    inMember = true;
+                    inflater.reset();
+                    crc.reset();
+                }
+                if (inflater.finished()) {
+                    // Give the bytes after the deflate data back, they are the trailer and the next member
+                    int remaining = inflater.getRemaining();
+                    if (remaining > 0) {
+                        in.unread(input, inputLength - remaining, remaining);
+                    }
+                    readTrailer();
+                    inMember = false;
+                    continue;
+                }
+                if (inflater.needsInput()) {
+                    inputLength = in.read(input);
+                    if (inputLength < 0) {
+                        throw new EOFException("Unexpected end of gzip data");
+                    }
+                    inflater.setInput(input, 0, inputLength);
+                }
+                try {
+                    int inflated = inflater.inflate(buffer, offset, length);
+                    if (inflated > 0) {
+                        crc.update(buffer, offset, inflated);
+                        return inflated;
+                    }
+                } catch (DataFormatException e) {
+                    throw new ZipException("Corrupt gzip data: " + e.getMessage());
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Corrupt gzip data: preset dictionary");
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return false if there is no further member
+         */
+        private boolean readHeader() throws IOException {
+            int id1 = in.read();
+            if (id1 < 0) {
+                return false;
+            }
+            if (id1 != 0x1f || in.read() != 0x8b || in.read() != 8) {
+                throw new ZipException("Not in gzip format");
+            }
+            int flags = readByte();
+            in.skipNBytes(6); // MTIME, XFL, OS
+            if ((flags & FEXTRA) != 0) {
+                in.skipNBytes(readByte() | readByte() << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                while (readByte() != 0) {
+                    // skip the zero-terminated file name
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (readByte() != 0) {
+                    // skip the zero-terminated comment
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                in.skipNBytes(2);
+            }
+            return true;
+        }
+
+        private void readTrailer() throws IOException {
+            long expectedCrc = readInt();
+            long expectedSize = readInt();
+            if (expectedCrc != crc.getValue()) {
+                throw new ZipException("Corrupt gzip member: CRC mismatch");
+            }
+            if (expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt gzip member: size mismatch");
+            }
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of gzip data");
+            }
+            return b;
+        }
+
+        private long readInt() throws IOException {
+            return (readByte() | readByte() << 8 | readByte() << 16 | (long) readByte() << 24);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+    }
+
+    /**
+     * Inflates batches of members on a pool and returns their bytes in file order. At most two
+     * batches per thread are held at a time, so memory stays bounded however big the file is.
+     */
+    private static final class ParallelStream extends InputStream {
+        private final FileChannel channel;
+        private final long[] batches;
+        private final ForkJoinPool pool;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private final int lookAhead;
+        private int nextBatch = 0;
+        private byte[] current = new byte[0];
+        private int position = 0;
+
+        ParallelStream(Path path, long[] batches, int parallelism) throws IOException {
+            this.channel = FileChannel.open(path);
+            this.batches = batches;
+            this.pool = new ForkJoinPool(parallelism);
+            this.lookAhead = parallelism * 2;
+            fill();
+        }
+
+        private void fill() {
+            while (pending.size() < lookAhead && nextBatch < batches.length - 1) {
+                long start = batches[nextBatch];
+                long end = batches[++nextBatch];
+                pending.add(pool.submit(() -> inflate(start, end)));
+            }
+        }
+
+        private byte[] inflate(long start, long end) throws IOException {
+            ByteBuffer compressed = ByteBuffer.allocate((int) (end - start));
+            while (compressed.hasRemaining() && channel.read(compressed, start + compressed.position()) >= 0) {
+                // read the whole batch
+            }
+            try (MemberStream members = new MemberStream(new ByteArrayInputStream(compressed.array(), 0, compressed.position()))) {
+                return members.readAllBytes();
+            }
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        private boolean nextBatch() throws IOException {
+            while (position == current.length) {
+                Future<byte[]> batch = pending.poll();
+                if (batch == null) {
+                    return false;
+                }
+                try {
+                    current = batch.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while inflating");
+                }
+                position = 0;
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextBatch() ? current[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBatch()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pool.shutdownNow();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Parser;
+
+import java.util.function.Predicate;
+
+/**
+ * Ready-made header predicates for PGNParser.setHeaderFilter. Combine them with and()/or().
+ */
+public class HeaderFilters {
+
+    /**
+     * Games whose tag has exactly this value, e.g. tagEquals("Event", "Tbilisi FIDE GP 2015").
+     */
+    public static Predicate<GameHeaders> tagEquals(String tagName, String value) {
+        return headers -> value.equals(headers.get(tagName));
+    }
+
+    /**
+     * Games whose numeric tag is at least the minimum, e.g. atLeast("WhiteElo", 2400).
+     * Games without the tag, or with a non-numeric value, are rejected.
+     */
+    public static Predicate<GameHeaders> atLeast(String tagName, int minimum) {
+        return headers -> {
+            String value = headers.get(tagName);
+            if (value == null || value.isEmpty()) {
+                return false;
+            }
+            try {
+                return Integer.parseInt(value) >= minimum;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Games played between the two PGN dates (inclusive), e.g. dateBetween("2015.01.01", "2015.12.31").
+     * PGN dates are "YYYY.MM.DD" so they compare as text; games with an unknown year are rejected.
+     */
+    public static Predicate<GameHeaders> dateBetween(String from, String to) {
+        return headers -> {
+            String date = headers.get(PGNTag.DATE);
+            if (date == null || date.startsWith("?")) {
+                return false;
+            }
+            return date.compareTo(from) >= 0 && date.compareTo(to) <= 0;
+        };
+    }
+}
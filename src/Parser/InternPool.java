@@ -0,0 +1,34 @@
+package Parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe pool that hands out one shared instance per distinct string.
+ * PGN corpora repeat the same events, sites and player names millions of times,
+ * so interning them means each game only holds references.
+ * The pool stops growing at its capacity; values seen after that are returned as they are.
+ */
+public class InternPool {
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    public InternPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public String intern(String value) {
+        String shared = pool.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (pool.size() >= capacity) {
+            return value;
+        }
+        shared = pool.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
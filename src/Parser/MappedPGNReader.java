@@ -0,0 +1,186 @@
+package Parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a PGN file line by line straight out of memory-mapped windows.
+ * <p>
+ * A single {@link MappedByteBuffer} is limited to 2 GB, so the file is mapped
+ * as a sequence of windows that slide forward whenever a line would cross the
+ * end of the current one. This stands in for mapping the whole file as one
+ * MemorySegment, which is not final API in Java 17.
+ * A line longer than a whole window is split at the window end.
+ * <p>
+ * Files are read as UTF-8, like the parser's Reader-based path. A line of ASCII bytes
+ * is exposed as a reusable, already trimmed {@link CharSequence} view over the mapped
+ * bytes, so no per-line String is built; a line with other bytes is decoded to a String,
+ * so it reads the same characters as the Reader would.
+ */
+public class MappedPGNReader implements AutoCloseable {
+    // 1 GiB per mapping keeps us well below the MappedByteBuffer limit
+    static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long windowSize;
+    private final long end;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+
+    private final ByteLine line = new ByteLine();
+    private long lineOffset = -1;
+    // The current line decoded, if it is not plain ASCII
+    private String decoded;
+    // Whether the bytes the last indexOfNewline went over include one above 0x7F
+    private boolean nonAscii;
+
+    public MappedPGNReader(Path path) throws IOException {
+        this(path, 0, -1, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads only the byte range [start, end) of the file. An end of -1 means end of file.
+     */
+    public MappedPGNReader(Path path, long start, long end) throws IOException {
+        this(path, start, end, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedPGNReader(Path path, long start, long end, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.windowSize = windowSize;
+        long size = channel.size();
+        this.end = end < 0 ? size : Math.min(end, size);
+        map(Math.min(start, this.end));
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false once the end of the range has been reached
+     */
+    public boolean nextLine() throws IOException {
+        if (windowStart + position >= end) {
+            return false;
+        }
+
+        int limit = window.limit();
+        int newline = indexOfNewline(position, limit);
+
+        if (newline < 0 && windowStart + limit < end) {
+            // The line runs past this window, slide the window so it starts at the line
+            map(windowStart + position);
+            limit = window.limit();
+            newline = indexOfNewline(position, limit);
+        }
+
+        int lineEnd = newline < 0 ? limit : newline;
+        lineOffset = windowStart + position;
+        line.set(window, position, lineEnd);
+        decoded = nonAscii ? line.toString() : null;
+        position = newline < 0 ? limit : newline + 1;
+        return true;
+    }
+
+    /**
+     * The current line with surrounding whitespace removed. Only valid until the next call to {@link #nextLine()}.
+     */
+    public CharSequence line() {
+        return decoded != null ? decoded : line;
+    }
+
+    /**
+     * Absolute file offset of the first byte of the current (untrimmed) line.
+     */
+    public long lineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Absolute file offset of the first byte that has not been read yet.
+     */
+    public long offset() {
+        return windowStart + position;
+    }
+
+    private int indexOfNewline(int from, int limit) {
+        int bits = 0;
+        for (int i = from; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == '\n') {
+                nonAscii = bits < 0;
+                return i;
+            }
+            bits |= b;
+        }
+        nonAscii = bits < 0;
+        return -1;
+    }
+
+    private void map(long start) throws IOException {
+        long length = Math.min(windowSize, end - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Trimmed view of a single line inside a mapped window.
+     * Characters are the raw bytes, which only holds for ASCII lines; toString() decodes UTF-8.
+     */
+    static final class ByteLine implements CharSequence {
+        private ByteBuffer buffer;
+        private int start;
+        private int end;
+
+        void set(ByteBuffer buffer, int start, int end) {
+            // Same rule as String.trim(): drop everything <= ' ' at both ends (covers '\r')
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            ByteLine view = new ByteLine();
+            view.buffer = buffer;
+            view.start = start + from;
+            view.end = start + to;
+            return view;
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
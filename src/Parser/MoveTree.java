@@ -0,0 +1,130 @@
+package Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves of a game together with its recursive annotation variations (RAV).
+ * <p>
+ * Every node is a move; its first child is the move that was played next and the other children
+ * are the alternatives given in parentheses. The root is the starting position and has no move.
+ * Built in one forward pass over the movetext with a stack of branch points, so nesting depth does not matter.
+ */
+public class MoveTree {
+
+    public static class Node {
+        private final String san;
+        private final int ply;
+        private final Node parent;
+        private final List<Node> children = new ArrayList<>(1);
+
+        private Node(String san, Node parent) {
+            this.san = san;
+            this.parent = parent;
+            this.ply = parent == null ? 0 : parent.ply + 1;
+        }
+
+        /**
+         * The move in SAN, null for the root.
+         */
+        public String getSan() {
+            return san;
+        }
+
+        /**
+         * Half-move number of this move, 1 is white's first move.
+         */
+        public int getPly() {
+            return ply;
+        }
+
+        public boolean isWhiteMove() {
+            return ply % 2 == 1;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * The continuation played in this line first, then the variations branching off at this point.
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return ply == 0 ? "start" : ((ply + 1) / 2) + (isWhiteMove() ? ". " : "... ") + san;
+        }
+    }
+
+    private final Node root = new Node(null, null);
+    private int variationCount = 0;
+
+    /**
+     * Builds the tree from movetext. Comments, NAGs, move numbers and the result are ignored;
+     * a ")" without a matching "(" is ignored and variations still open at the end are closed.
+     */
+    public static MoveTree parse(CharSequence movetext) {
+        MoveTree tree = new MoveTree();
+        MovetextTokenizer tokenizer = new MovetextTokenizer(movetext);
+
+        // The last move of the line being read, and the last move of every enclosing line
+        Node current = tree.root;
+        List<Node> openLines = new ArrayList<>();
+
+        MovetextTokenizer.TokenType type;
+        while ((type = tokenizer.next()) != MovetextTokenizer.TokenType.END) {
+            switch (type) {
+                case SAN -> {
+                    Node move = new Node(tokenizer.text(), current);
+                    current.children.add(move);
+                    if (current.children.size() > 1) {
+                        tree.variationCount++;
+                    }
+                    current = move;
+                }
+                case VARIATION_START -> {
+                    // A variation replaces the last move, so it continues from that move's parent
+                    openLines.add(current);
+                    if (current.parent != null) {
+                        current = current.parent;
+                    }
+                }
+                case VARIATION_END -> {
+                    if (!openLines.isEmpty()) {
+                        current = openLines.remove(openLines.size() - 1);
+                    }
+                }
+                default -> {
+                    // move numbers, comments, NAGs and results carry no moves
+                }
+            }
+        }
+        return tree;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * The moves of the main line, as PGNParser returns them.
+     */
+    public List<String> getMainLine() {
+        List<String> moves = new ArrayList<>();
+        for (Node node = root; !node.children.isEmpty(); ) {
+            node = node.children.get(0);
+            moves.add(node.san);
+        }
+        return moves;
+    }
+
+    /**
+     * Number of variations in the whole tree, nested ones included.
+     */
+    public int getVariationCount() {
+        return variationCount;
+    }
+}
@@ -0,0 +1,178 @@
+package Parser;
+
+/**
+ * Hand-written, single forward pass tokenizer for PGN movetext.
+ * <p>
+ * Works directly on any CharSequence (a StringBuilder, a String or a mapped byte line)
+ * and never copies the input: each call to {@link #next()} only moves the cursor and
+ * records the bounds of the token, text() builds a String on demand.
+ */
+public class MovetextTokenizer {
+
+    public enum TokenType {
+        MOVE_NUMBER,      // "12." or "12..." (black continuation)
+        SAN,              // anything else that is not structural, e.g. "Nf3", "exd5+", "O-O"
+        COMMENT,          // "{ ... }", bounds include the braces
+        NAG,              // "$1"
+        VARIATION_START,  // "("
+        VARIATION_END,    // ")"
+        RESULT,           // "1-0", "0-1", "1/2-1/2" or "*"
+        END               // no more input
+    }
+
+    private CharSequence text;
+    private int position;
+    private int limit;
+
+    private int tokenStart;
+    private int tokenEnd;
+
+    public MovetextTokenizer(CharSequence text) {
+        reset(text);
+    }
+
+    /**
+     * Points the tokenizer at new movetext so one instance can be reused across games.
+     */
+    public MovetextTokenizer reset(CharSequence text) {
+        this.text = text;
+        this.position = 0;
+        this.limit = text.length();
+        this.tokenStart = 0;
+        this.tokenEnd = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next token and returns its type.
+     */
+    public TokenType next() {
+        // Skip whitespace between tokens
+        while (position < limit && text.charAt(position) <= ' ') {
+            position++;
+        }
+        tokenStart = position;
+        if (position >= limit) {
+            tokenEnd = position;
+            return TokenType.END;
+        }
+
+        char c = text.charAt(position);
+        switch (c) {
+            case '{' -> {
+                // Comments cannot nest, run to the closing brace (or the end of an unterminated comment)
+                while (position < limit && text.charAt(position) != '}') {
+                    position++;
+                }
+                position = Math.min(position + 1, limit);
+                tokenEnd = position;
+                return TokenType.COMMENT;
+            }
+            case '(' -> {
+                tokenEnd = ++position;
+                return TokenType.VARIATION_START;
+            }
+            case ')' -> {
+                tokenEnd = ++position;
+                return TokenType.VARIATION_END;
+            }
+            case '$' -> {
+                position++;
+                while (position < limit && isDigit(text.charAt(position))) {
+                    position++;
+                }
+                tokenEnd = position;
+                return TokenType.NAG;
+            }
+            default -> {
+                // Digits directly followed by dots are a move number, e.g. "1." in "1.e4" or "12..."
+                if (isDigit(c)) {
+                    int digitsEnd = position;
+                    while (digitsEnd < limit && isDigit(text.charAt(digitsEnd))) {
+                        digitsEnd++;
+                    }
+                    if (digitsEnd < limit && text.charAt(digitsEnd) == '.') {
+                        position = digitsEnd;
+                        while (position < limit && text.charAt(position) == '.') {
+                            position++;
+                        }
+                        tokenEnd = position;
+                        return TokenType.MOVE_NUMBER;
+                    }
+                }
+
+                while (position < limit && !isDelimiter(text.charAt(position))) {
+                    position++;
+                }
+                tokenEnd = position;
+                return isResult() ? TokenType.RESULT : TokenType.SAN;
+            }
+        }
+    }
+
+    /**
+     * Start offset of the current token in the input.
+     */
+    public int start() {
+        return tokenStart;
+    }
+
+    /**
+     * End offset (exclusive) of the current token in the input.
+     */
+    public int end() {
+        return tokenEnd;
+    }
+
+    /**
+     * The current token as a String. Allocates, so only call it for tokens you keep.
+     */
+    public String text() {
+        return text.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /**
+     * Number of a MOVE_NUMBER token ("12..." gives 12).
+     */
+    public int moveNumber() {
+        int number = 0;
+        for (int i = tokenStart; i < tokenEnd && isDigit(text.charAt(i)); i++) {
+            number = number * 10 + (text.charAt(i) - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Whether the current MOVE_NUMBER token is black's continuation, "12..." rather than "12.".
+     */
+    public boolean isContinuation() {
+        return tokenEnd - tokenStart >= 2 && text.charAt(tokenEnd - 2) == '.';
+    }
+
+    private boolean isResult() {
+        int length = tokenEnd - tokenStart;
+        return switch (length) {
+            case 1 -> text.charAt(tokenStart) == '*';
+            case 3 -> matches("1-0") || matches("0-1");
+            case 7 -> matches("1/2-1/2");
+            default -> false;
+        };
+    }
+
+    private boolean matches(String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(tokenStart + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c <= ' ' || c == '{' || c == '(' || c == ')' || c == '$';
+    }
+}
@@ -0,0 +1,30 @@
+package Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A compressed file format the parser can read directly, without decompressing to disk first.
+ * Codecs are looked up by file name through PGNCodecs; register your own there.
+ */
+public interface PGNCodec {
+
+    /**
+     * Whether this codec reads the file, normally decided by its extension.
+     */
+    boolean accepts(Path path);
+
+    /**
+     * The decompressed content of the file, read front to back.
+     */
+    InputStream open(Path path) throws IOException;
+
+    /**
+     * Same content as open(path), decompressed on several threads if the format can be split.
+     * The default decompresses sequentially.
+     */
+    default InputStream open(Path path, int parallelism) throws IOException {
+        return open(path);
+    }
+}
@@ -0,0 +1,31 @@
+package Parser;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The codecs the parser knows. Gzip is registered by default.
+ */
+public class PGNCodecs {
+    private static final List<PGNCodec> CODECS = new CopyOnWriteArrayList<>(List.of(new GzipCodec()));
+
+    /**
+     * Adds a codec; codecs registered later are asked first.
+     */
+    public static void register(PGNCodec codec) {
+        CODECS.add(0, codec);
+    }
+
+    /**
+     * @return the codec for the file, or null if it is a plain PGN file
+     */
+    public static PGNCodec forPath(Path path) {
+        for (PGNCodec codec : CODECS) {
+            if (codec.accepts(path)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package Parser;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Cuts a single PGN file into byte ranges that each start at the beginning of a game,
+ * so the ranges can be parsed independently and still give the same games as one sequential pass.
+ */
+public class PGNFileSplitter {
+
+    /**
+     * Splits the file into at most the given number of ranges.
+     *
+     * @return strictly increasing boundaries; range i is [boundaries[i], boundaries[i + 1])
+     */
+    public static long[] split(Path path, int parts) throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+
+        long[] boundaries = new long[Math.max(1, parts) + 1];
+        int count = 0;
+        boundaries[count++] = 0;
+
+        for (int i = 1; i < parts; i++) {
+            long nominal = size * i / parts;
+            // Realign to the next game start, ranges too small to contain one simply collapse
+            long aligned = alignToGameStart(path, Math.max(nominal, boundaries[count - 1] + 1), size);
+            if (aligned < size && aligned > boundaries[count - 1]) {
+                boundaries[count++] = aligned;
+            }
+        }
+        boundaries[count++] = size;
+
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Finds the first game start at or after the offset: a header line that opens a header block,
+     * i.e. one whose previous non-empty line is not a header. When that previous line lies before
+     * the offset and cannot be classified, only an [Event tag is accepted.
+     *
+     * @return the offset of the header line, or size if there is none
+     */
+    static long alignToGameStart(Path path, long offset, long size) throws IOException {
+        try (MappedPGNReader reader = new MappedPGNReader(path, offset, size)) {
+            // null means "unknown": we may have landed at a line start and never saw the previous line
+            Boolean previousIsHeader = null;
+
+            if (offset > 0 && reader.nextLine()) {
+                // The first line is (usually) the tail of a line that started before the offset
+                CharSequence partial = reader.line();
+                if (partial.length() > 0) {
+                    previousIsHeader = partial.charAt(0) == '[' || partial.charAt(partial.length() - 1) == ']';
+                }
+            }
+
+            while (reader.nextLine()) {
+                CharSequence line = reader.line();
+                if (line.length() == 0) {
+                    continue;
+                }
+
+                boolean isHeader = line.charAt(0) == '[';
+                if (isHeader && (Boolean.FALSE.equals(previousIsHeader) || startsWith(line, "[Event "))) {
+                    return reader.lineOffset();
+                }
+                previousIsHeader = isHeader;
+            }
+        }
+        return size;
+    }
+
+    private static boolean startsWith(CharSequence line, String prefix) {
+        if (line.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
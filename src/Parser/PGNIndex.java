@@ -0,0 +1,170 @@
+package Parser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Sidecar index (".pgi" next to the PGN file) with the byte offset, length and header hash of
+ * every game, so game n can be read without parsing the n - 1 games before it.
+ * <p>
+ * Entry i describes "Game #(i + 1)" exactly as the parser numbers it in Parser.log, omitted
+ * games included. The index remembers how many bytes of the file it covers and the file's
+ * modification time from before they were read, so a stale index is detected, also when the
+ * file grew while it was being indexed.
+ */
+public class PGNIndex {
+    private static final int MAGIC = 0x50474931; // "PGI1"
+
+    private long[] offsets = new long[64];
+    private int[] lengths = new int[64];
+    private long[] headerHashes = new long[64];
+    private int size = 0;
+
+    // The file state this index was built from: the bytes indexed and the modification time before reading them
+    private long fileSize = -1;
+    private long lastModified = -1;
+
+    public static Path sidecarPath(Path pgnFile) {
+        return Paths.get(pgnFile + ".pgi");
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getOffset(int gameNumber) {
+        return offsets[gameNumber - 1];
+    }
+
+    public int getLength(int gameNumber) {
+        return lengths[gameNumber - 1];
+    }
+
+    public long getHeaderHash(int gameNumber) {
+        return headerHashes[gameNumber - 1];
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * True if the PGN file is still exactly the bytes that were indexed, with the same modification time.
+     */
+    public boolean isCurrent(Path pgnFile) throws IOException {
+        return fileSize == Files.size(pgnFile)
+                && lastModified == Files.getLastModifiedTime(pgnFile).toMillis();
+    }
+
+    /**
+     * Adds the next game. Its length is only known once the following game (or the end) is found.
+     */
+    void add(long offset, long headerHash) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            headerHashes = Arrays.copyOf(headerHashes, size * 2);
+        }
+        if (size > 0) {
+            lengths[size - 1] = (int) (offset - offsets[size - 1]);
+        }
+        offsets[size] = offset;
+        headerHashes[size] = headerHash;
+        size++;
+    }
+
+    /**
+     * Drops the games from the given one on, so they can be indexed again.
+     */
+    void truncate(int gameNumber) {
+        size = Math.max(0, gameNumber - 1);
+    }
+
+    /**
+     * Closes the last game at the end of the indexed bytes and records the file state.
+     *
+     * @param lastModified the file's modification time, read before its bytes were
+     */
+    void complete(long indexedEnd, long lastModified) {
+        if (size > 0) {
+            lengths[size - 1] = (int) (indexedEnd - offsets[size - 1]);
+        }
+        this.fileSize = indexedEnd;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 64-bit FNV-1a hash over the tag names and values, used to check that an entry still points at the same game.
+     */
+    public static long headerHash(GameHeaders headers) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < headers.size(); i++) {
+            hash = fnv(hash, headers.tagName(i));
+            hash = fnv(hash, headers.value(i));
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Separator so ("ab", "c") and ("a", "bc") hash differently
+        hash ^= 0xFF;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+
+    public void write(Path pgnFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(sidecarPath(pgnFile))))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeLong(headerHashes[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the sidecar of the PGN file.
+     *
+     * @return the index, or null if there is no sidecar or it is not a valid index
+     */
+    public static PGNIndex read(Path pgnFile) {
+        Path sidecar = sidecarPath(pgnFile);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            PGNIndex index = new PGNIndex();
+            index.fileSize = in.readLong();
+            index.lastModified = in.readLong();
+            int count = in.readInt();
+            index.offsets = new long[Math.max(count, 1)];
+            index.lengths = new int[Math.max(count, 1)];
+            index.headerHashes = new long[Math.max(count, 1)];
+            for (int i = 0; i < count; i++) {
+                index.offsets[i] = in.readLong();
+                index.lengths[i] = in.readInt();
+                index.headerHashes[i] = in.readLong();
+            }
+            index.size = count;
+            return index;
+        } catch (IOException e) {
+            Util.PGNLogger.warning("Ignoring unreadable PGN index: " + sidecar);
+            return null;
+        }
+    }
+}
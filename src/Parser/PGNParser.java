@@ -237,11 +237,27 @@
 package Parser;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A robust PGN file parser that uses a state machine approach
@@ -250,120 +266,890 @@ import java.util.regex.Pattern;
 public class PGNParser {
     // Collections to store parsed games
     private List<List<String>> GameList = new ArrayList<>();
+    private List<GameHeaders> HeaderList = new ArrayList<>(); // headers of GameList.get(i) are HeaderList.get(i)
 
     // State machine states
     private enum ParserState {
         BETWEEN_GAMES,  // Between games or at start of file
         IN_HEADERS,     // Currently reading header tags
-        IN_MOVES        // Currently reading moves
+        IN_MOVES,       // Currently reading moves
+        SKIPPING_MOVES  // Reading the moves of a game rejected by the header filter
     }
 
+    // Games whose headers fail this test are skipped before their moves are processed (null accepts all)
+    private Predicate<GameHeaders> headerFilter;
+
+    private static final Predicate<GameHeaders> REJECT_ALL = headers -> false;
+
+    // Whether the mapped and parallel parsers write a .pgi game index next to the file
+    private boolean writeIndex = false;
+
+    // Whether parsed games keep a MoveTree with their variations
+    private boolean keepVariations = false;
+
+    // Games it has already seen are dropped right after their moves are processed (null keeps all)
+    private GameDeduplicator deduplicator;
+
+    // Patterns to detect structural elements
+    private static final Pattern headerPattern = Pattern.compile("\\[(\\w+)\\s+\"(.*)\"\\]");
+    private static final Pattern moveNumberPattern = Pattern.compile("^\\d+\\."); // Starts with digits followed by dot
+    private static final Pattern resultPattern = Pattern.compile("(1-0|0-1|1/2-1/2|\\*)\\s*$");
+
+    // Patterns for common algebraic notation, used by containsChessNotation
+    private static final Pattern piecePattern = Pattern.compile("[KQRBN][a-h][1-8]");
+    private static final Pattern pawnMovePattern = Pattern.compile("[a-h][1-8]");
+    private static final Pattern capturePattern = Pattern.compile("[KQRBNa-h]x[a-h][1-8]");
+    private static final Pattern castlePattern = Pattern.compile("O-O(-O)?");
+
     /**
-     * Processes a PGN file and extracts all games
+     * Processes a PGN file and extracts all games. Compressed files (e.g. .pgn.gz) are
+     * decompressed on the fly by their PGNCodec.
      *
      * @param fileName Path to the PGN file
      */
     public void parsePGNFile(String fileName) {
         // Clear any previous data
         GameList.clear();
+        HeaderList.clear();
 
         Util.PGNLogger.info("Starting to parse PGN file: " + fileName);
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            ParserState state = ParserState.BETWEEN_GAMES;
-            StringBuilder currentHeaders = new StringBuilder();
-            StringBuilder currentMoves = new StringBuilder();
+        try (BufferedReader reader = openReader(Paths.get(fileName), 1)) {
+            ParseSession session = new ParseSession(this::addGame);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                session.acceptLine(line.trim());
+            }
+
+            // Process the final game if there is one in progress
+            session.finish();
+
+            Util.PGNLogger.info("Completed parsing PGN file. Successfully parsed " + GameList.size() + " games.");
+
+        } catch (IOException e) {
+            Util.PGNLogger.error("Error reading PGN file: " + fileName);
+        }
+    }
+
+    /**
+     * Processes a PGN file through memory-mapped windows instead of a Reader.
+     * Lines are scanned directly in the mapped bytes and fed to the same state machine
+     * as parsePGNFile. Both read the file as UTF-8, so the results are identical, but only
+     * lines with non-ASCII bytes are decoded to a String.
+     * Suitable for multi-gigabyte files.
+     *
+     * @param fileName Path to the PGN file
+     */
+    public void parsePGNFileMapped(String fileName) {
+        // Clear any previous data
+        GameList.clear();
+        HeaderList.clear();
+
+        Path path = Paths.get(fileName);
+        if (PGNCodecs.forPath(path) != null) {
+            // Compressed bytes cannot be scanned in place
+            parsePGNFile(fileName);
+            return;
+        }
+
+        Util.PGNLogger.info("Starting to parse memory-mapped PGN file: " + fileName);
+        try {
+            // Taken before mapping, so a write while the file is read leaves the index stale
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            try (MappedPGNReader reader = new MappedPGNReader(path)) {
+                PGNIndex index = writeIndex ? new PGNIndex() : null;
+                ParseSession session = new ParseSession(this::addGame, headerFilter, index);
+
+                while (reader.nextLine()) {
+                    session.acceptLine(reader.line(), reader.lineOffset());
+                }
 
-            // Patterns to detect structural elements
-            Pattern headerPattern = Pattern.compile("\\[(\\w+)\\s+\"(.*)\"\\]");
-            Pattern moveNumberPattern = Pattern.compile("^\\d+\\."); // Starts with digits followed by dot
-            Pattern resultPattern = Pattern.compile("(1-0|0-1|1/2-1/2|\\*)\\s*$");
+                // Process the final game if there is one in progress
+                session.finish();
 
+                Util.PGNLogger.info("Completed parsing PGN file. Successfully parsed " + GameList.size() + " games.");
+
+                if (index != null) {
+                    writeIndex(path, index, reader.offset(), lastModified);
+                }
+            }
+        } catch (IOException e) {
+            Util.PGNLogger.error("Error reading PGN file: " + fileName);
+        }
+    }
+
+    /**
+     * Parses a single PGN file on several threads. The file is cut into byte ranges aligned to
+     * game starts, each range is parsed on a fork-join pool, and the games are collected in file
+     * order, so the result is the same as parsePGNFile. Compressed files are decompressed on
+     * the threads instead (if their codec can split them) and parsed as they come in.
+     *
+     * @param fileName    Path to the PGN file
+     * @param parallelism Number of ranges and worker threads
+     */
+    public void parsePGNFileParallel(String fileName, int parallelism) {
+        // Clear any previous data
+        GameList.clear();
+        HeaderList.clear();
+
+        try {
+            for (ParsedGame game : parseGamesParallel(Paths.get(fileName), parallelism)) {
+                addGame(game);
+            }
+            Util.PGNLogger.info("Completed parsing PGN file. Successfully parsed " + GameList.size() + " games.");
+        } catch (IOException e) {
+            Util.PGNLogger.error("Error reading PGN file: " + fileName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Util.PGNLogger.error("Interrupted while parsing PGN file: " + fileName);
+        }
+    }
+
+    /**
+     * Parallel parse of one file, see parsePGNFileParallel.
+     * Game numbers are renumbered to their position in the whole file.
+     */
+    public List<ParsedGame> parseGamesParallel(Path path, int parallelism) throws IOException, InterruptedException {
+        if (PGNCodecs.forPath(path) != null) {
+            return parseCompressed(path, parallelism);
+        }
+        Util.PGNLogger.info("Starting to parse PGN file on " + parallelism + " threads: " + path);
+
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long[] boundaries = PGNFileSplitter.split(path, parallelism);
+        List<Callable<RangeResult>> tasks = new ArrayList<>();
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            tasks.add(() -> parseRange(path, start, end));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ParsedGame> games = new ArrayList<>();
+            PGNIndex index = writeIndex ? new PGNIndex() : null;
+            int gamesBefore = 0;
+            // invokeAll keeps the futures in range order, which keeps the games in file order
+            for (Future<RangeResult> future : pool.invokeAll(tasks)) {
+                RangeResult range = future.get();
+                for (ParsedGame game : range.games) {
+                    ParsedGame renumbered = game.withGameNumber(gamesBefore + game.getGameNumber());
+                    // Deduplicated here rather than in the ranges so the first copy in the file is the one kept
+                    if (!isDuplicate(renumbered)) {
+                        games.add(renumbered);
+                    }
+                }
+                gamesBefore += range.gameCount;
+                if (index != null) {
+                    for (int n = 1; n <= range.index.size(); n++) {
+                        index.add(range.index.getOffset(n), range.index.getHeaderHash(n));
+                    }
+                }
+            }
+            if (index != null) {
+                writeIndex(path, index, boundaries[boundaries.length - 1], lastModified);
+            }
+            return games;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<ParsedGame> parseCompressed(Path path, int parallelism) throws IOException {
+        Util.PGNLogger.info("Starting to parse compressed PGN file, decompressing on " + parallelism + " threads: " + path);
+        List<ParsedGame> games = new ArrayList<>();
+        try (BufferedReader reader = openReader(path, parallelism)) {
+            ParseSession session = new ParseSession(games::add);
             String line;
-            int lineNumber = 0;
-            int gameCount = 0;
+            while ((line = reader.readLine()) != null) {
+                session.acceptLine(line.trim());
+            }
+            session.finish();
+        }
+        return games;
+    }
+
+    /**
+     * Opens the file for reading lines, through its codec if it is compressed.
+     */
+    private static BufferedReader openReader(Path path, int parallelism) throws IOException {
+        PGNCodec codec = PGNCodecs.forPath(path);
+        if (codec == null) {
+            return new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+        }
+        // UTF-8 whatever the platform, like MappedPGNReader, so every path decodes a file alike
+        return new BufferedReader(new InputStreamReader(codec.open(path, parallelism), StandardCharsets.UTF_8), 1 << 16);
+    }
 
+    /**
+     * Header-only scan for corpus statistics such as game counts, tag values or result distributions.
+     * Finds the same games as parsePGNFile (omitted ones included) and hands their headers to the sink,
+     * but movetext is only checked for its first character and a result at the end of the line; it is
+     * never tokenized or validated. The header filter applies. Nothing is added to getGameList().
+     *
+     * @return the number of games found
+     */
+    public long scanHeaders(Path path, Consumer<GameHeaders> sink) throws IOException {
+        Util.PGNLogger.info("Starting header scan of PGN file: " + path);
+        long games = PGNCodecs.forPath(path) != null ? scanCompressedHeaders(path, 1, sink) : scanHeaderRange(path, 0, -1, sink);
+        Util.PGNLogger.info("Completed header scan. Found " + games + " games.");
+        return games;
+    }
+
+    /**
+     * scanHeaders on several threads, each scanning a byte range aligned to game starts.
+     * The sink is called from the worker threads and not in file order, so it must be thread-safe.
+     *
+     * @return the number of games found
+     */
+    public long scanHeadersParallel(Path path, int parallelism, Consumer<GameHeaders> sink)
+            throws IOException, InterruptedException {
+        Util.PGNLogger.info("Starting header scan of PGN file on " + parallelism + " threads: " + path);
+        if (PGNCodecs.forPath(path) != null) {
+            long games = scanCompressedHeaders(path, parallelism, sink);
+            Util.PGNLogger.info("Completed header scan. Found " + games + " games.");
+            return games;
+        }
+
+        long[] boundaries = PGNFileSplitter.split(path, parallelism);
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            tasks.add(() -> scanHeaderRange(path, start, end, sink));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long games = 0;
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                games += future.get();
+            }
+            Util.PGNLogger.info("Completed header scan. Found " + games + " games.");
+            return games;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long scanHeaderRange(Path path, long start, long end, Consumer<GameHeaders> sink) throws IOException {
+        HeaderScan scan = new HeaderScan(sink);
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, end)) {
+            while (reader.nextLine()) {
+                scan.acceptLine(reader.line());
+            }
+        }
+        return scan.gameCount;
+    }
+
+    private long scanCompressedHeaders(Path path, int parallelism, Consumer<GameHeaders> sink) throws IOException {
+        HeaderScan scan = new HeaderScan(sink);
+        try (BufferedReader reader = openReader(path, parallelism)) {
+            String line;
             while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                line = line.trim();
+                scan.acceptLine(line.trim());
+            }
+        }
+        return scan.gameCount;
+    }
+
+    /**
+     * Header-only counterpart of ParseSession. A game starts at the first movetext line after its headers
+     * (the same line ParseSession calls startMoves on) and its movetext ends at a result or the next header.
+     */
+    private class HeaderScan {
+        private final Consumer<GameHeaders> sink;
+        private final GameHeaders.Builder currentHeaders = new GameHeaders.Builder();
+        private boolean inMoves = false;
+        private long gameCount = 0;
+
+        HeaderScan(Consumer<GameHeaders> sink) {
+            this.sink = sink;
+        }
+
+        void acceptLine(CharSequence line) {
+            if (line.length() == 0) {
+                return;
+            }
+            if (line.charAt(0) == '[' && addHeader(line)) {
+                inMoves = false;
+                return;
+            }
+            if (!inMoves) {
+                // ParseSession ignores lines outside movetext that do not look like moves
+                if (!moveNumberPattern.matcher(line).find() && !containsChessNotation(line)) {
+                    return;
+                }
+                gameCount++;
+                GameHeaders headers = currentHeaders.build();
+                if (headerFilter == null || headerFilter.test(headers)) {
+                    sink.accept(headers);
+                }
+                inMoves = true;
+            }
+            if (endsWithResult(line)) {
+                inMoves = false;
+            }
+        }
+
+        /**
+         * Hand-written equivalent of headerPattern.
+         *
+         * @return false if the line is not a header tag
+         */
+        private boolean addHeader(CharSequence line) {
+            int length = line.length();
+            if (length < 5 || line.charAt(length - 1) != ']' || line.charAt(length - 2) != '"') {
+                return false;
+            }
+            int nameEnd = 1;
+            while (nameEnd < length && isWordChar(line.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            int quote = nameEnd;
+            while (quote < length && isSpace(line.charAt(quote))) {
+                quote++;
+            }
+            // The opening quote must come before the closing one
+            if (nameEnd == 1 || quote == nameEnd || quote >= length - 2 || line.charAt(quote) != '"') {
+                return false;
+            }
+            currentHeaders.add(line.subSequence(1, nameEnd).toString(), line.subSequence(quote + 1, length - 2).toString());
+            return true;
+        }
+
+        private boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        private boolean isSpace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+        }
+    }
+
+    /**
+     * Games found in one byte range; gameCount also includes the omitted ones.
+     */
+    private static class RangeResult {
+        final List<ParsedGame> games = new ArrayList<>();
+        final PGNIndex index = new PGNIndex();
+        int gameCount;
+    }
+
+    private RangeResult parseRange(Path path, long start, long end) throws IOException {
+        RangeResult result = new RangeResult();
+        // Game numbers in the log are relative to the range named in the context
+        Util.PGNLogger.setContext(path.getFileName() + " bytes " + start + "-" + end);
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, end)) {
+            ParseSession session = new ParseSession(result.games::add, headerFilter, writeIndex ? result.index : null);
+            session.deduplicate = false;
+            while (reader.nextLine()) {
+                session.acceptLine(reader.line(), reader.lineOffset());
+            }
+            session.finish();
+            result.gameCount = session.gameCount;
+        } finally {
+            Util.PGNLogger.clearContext();
+        }
+        return result;
+    }
+
+    /**
+     * Makes parsePGNFileMapped and parsePGNFileParallel write a .pgi index next to the file,
+     * which loadIndex and readGame can then use without parsing the file again.
+     */
+    public void setIndexWriting(boolean writeIndex) {
+        this.writeIndex = writeIndex;
+    }
+
+    /**
+     * @param indexedEnd   where the indexed bytes end, which the index records as the file size
+     * @param lastModified modification time of the file, read before its bytes were
+     */
+    private void writeIndex(Path path, PGNIndex index, long indexedEnd, long lastModified) throws IOException {
+        index.complete(indexedEnd, lastModified);
+        index.write(path);
+        Util.PGNLogger.info("Wrote index of " + index.size() + " games: " + PGNIndex.sidecarPath(path));
+    }
+
+    /**
+     * Returns the game index of the file, reusing the .pgi sidecar when it is still current.
+     * If games were appended since it was written, only the new bytes are indexed (starting again
+     * at the last indexed game, which may have been incomplete); otherwise the index is rebuilt.
+     * Either way the sidecar is rewritten.
+     */
+    public PGNIndex loadIndex(Path path) throws IOException {
+        PGNIndex index = PGNIndex.read(path);
+        if (index != null && index.isCurrent(path)) {
+            return index;
+        }
+
+        long start = 0;
+        if (index != null && index.size() > 0 && Files.size(path) > index.getFileSize()
+                && lastGameUnchanged(path, index)) {
+            int lastGame = index.size();
+            start = index.getOffset(lastGame);
+            index.truncate(lastGame);
+            Util.PGNLogger.info("Extending index of " + path + " from game #" + lastGame);
+        } else {
+            index = new PGNIndex();
+            Util.PGNLogger.info("Building index of " + path);
+        }
+
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, -1)) {
+            // Rejecting every game makes the session skip movetext, only boundaries and headers are read
+            ParseSession session = new ParseSession(game -> { }, REJECT_ALL, index);
+            while (reader.nextLine()) {
+                session.acceptLine(reader.line(), reader.lineOffset());
+            }
+            session.finish();
+            writeIndex(path, index, reader.offset(), lastModified);
+        }
+        return index;
+    }
+
+    private boolean lastGameUnchanged(Path path, PGNIndex index) throws IOException {
+        int lastGame = index.size();
+        PGNIndex check = new PGNIndex();
+        long start = index.getOffset(lastGame);
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, start + index.getLength(lastGame))) {
+            ParseSession session = new ParseSession(game -> { }, REJECT_ALL, check);
+            while (reader.nextLine()) {
+                session.acceptLine(reader.line(), reader.lineOffset());
+            }
+            session.finish();
+        }
+        return check.size() >= 1 && check.getHeaderHash(1) == index.getHeaderHash(lastGame);
+    }
+
+    /**
+     * Reads a single game through the .pgi index (built or refreshed first if needed),
+     * seeking straight to it instead of parsing the games before it.
+     *
+     * @param gameNumber the 1-based game number, as used in Parser.log
+     * @return the game, or null if it does not exist or was omitted because of inconsistencies
+     */
+    public ParsedGame readGame(Path path, int gameNumber) throws IOException {
+        PGNIndex index = loadIndex(path);
+        if (gameNumber < 1 || gameNumber > index.size()) {
+            Util.PGNLogger.warning("Game #" + gameNumber + " does not exist in " + path + " (" + index.size() + " games)");
+            return null;
+        }
+
+        long start = index.getOffset(gameNumber);
+        List<ParsedGame> games = new ArrayList<>();
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, start + index.getLength(gameNumber))) {
+            ParseSession session = new ParseSession(games::add, null, null);
+            // A single game asked for by number is never a duplicate of itself
+            session.deduplicate = false;
+            while (reader.nextLine()) {
+                session.acceptLine(reader.line(), reader.lineOffset());
+            }
+            session.finish();
+        }
+        if (games.isEmpty()) {
+            return null;
+        }
+        ParsedGame game = games.get(0);
+        if (PGNIndex.headerHash(game.getHeaders()) != index.getHeaderHash(gameNumber)) {
+            Util.PGNLogger.warning("Header hash mismatch for game #" + gameNumber + " in " + path);
+        }
+        return game.withGameNumber(gameNumber);
+    }
+
+    /**
+     * Parses the games appended to a growing file since the previous call, for live broadcasts.
+     * Only complete lines are read, and a game is only handed to the sink once it has ended, so a
+     * game that is still being written is left for the next call. Game numbers continue across calls.
+     *
+     * @param position where the previous call stopped (a new TailPosition for the first call),
+     *                 updated to where this call stopped
+     */
+    public void parseAppended(Path path, TailPosition position, Consumer<ParsedGame> sink) throws IOException {
+        long start = position.getOffset();
+        long end = lastCompleteLineEnd(path, start);
+        if (end <= start) {
+            return;
+        }
+
+        List<ParsedGame> games = new ArrayList<>();
+        ParseSession session = new ParseSession(games::add, headerFilter, null);
+        try (MappedPGNReader reader = new MappedPGNReader(path, start, end)) {
+            while (reader.nextLine()) {
+                session.acceptLine(reader.line(), reader.lineOffset());
+            }
+        }
+
+        // A game still in progress is not committed, it is parsed again once the rest of it has arrived
+        long committed = session.gameStart >= 0 ? session.gameStart : end;
+        int gamesBefore = position.getGameCount();
+        position.advance(committed, session.gameCount);
+
+        for (ParsedGame game : games) {
+            sink.accept(game.withGameNumber(gamesBefore + game.getGameNumber()));
+        }
+    }
 
-                // Skip empty lines but don't change state based on them
-                if (line.isEmpty()) {
-                    continue;
+    /**
+     * Offset just past the last newline at or after start, or start if there is none yet.
+     */
+    private static long lastCompleteLineEnd(Path path, long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long chunkEnd = channel.size();
+            while (chunkEnd > start) {
+                long chunkStart = Math.max(start, chunkEnd - buffer.capacity());
+                buffer.clear().limit((int) (chunkEnd - chunkStart));
+                while (buffer.hasRemaining() && channel.read(buffer, chunkStart + buffer.position()) >= 0) {
+                    // read the whole chunk
                 }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return chunkStart + i + 1;
+                    }
+                }
+                chunkEnd = chunkStart;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Restricts parsing to games whose headers pass the filter, see HeaderFilters for common ones.
+     * The filter runs as soon as a game's header block ends; the movetext of a rejected game is only
+     * scanned for its result token, it is not tokenized or validated. Pass null to accept every game.
+     */
+    public void setHeaderFilter(Predicate<GameHeaders> headerFilter) {
+        this.headerFilter = headerFilter;
+    }
+
+    /**
+     * Makes every parsed game carry a MoveTree with its variations (ParsedGame.getMoveTree),
+     * e.g. for opening books. getGameList() still only has the main lines.
+     */
+    public void setKeepVariations(boolean keepVariations) {
+        this.keepVariations = keepVariations;
+    }
 
-                // Check if this line is a header tag
-                Matcher headerMatcher = headerPattern.matcher(line);
-                if (headerMatcher.matches()) {
-                    // Found a header tag
-
-                    if (state == ParserState.IN_MOVES) {
-                        // If we were in moves and found a header, this is a new game
-                        // Process the completed game first
-                        processMoves(currentMoves, ++gameCount);
-                        currentMoves = new StringBuilder();
-                        currentHeaders = new StringBuilder();
+    /**
+     * Drops games whose moves (and the deduplicator's header tags) were already seen, before they
+     * reach ChessMovesParser or the controller. Share one deduplicator between parsers to
+     * deduplicate across files. Pass null to keep every game.
+     */
+    public void setDeduplicator(GameDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Lazily parses a PGN file. Each game is handed out as soon as its result token has been
+     * read, so evaluation of game 1 can start while game 2 is still being read and at most one
+     * game is held in memory. The stream must be closed to release the file (try-with-resources).
+     *
+     * @param path Path to the PGN file
+     * @return an ordered stream of the games that parsed successfully
+     */
+    public Stream<ParsedGame> games(Path path) throws IOException {
+        Util.PGNLogger.info("Starting to stream PGN file: " + path);
+        AutoCloseable source;
+        LineSource lines;
+        if (PGNCodecs.forPath(path) != null) {
+            BufferedReader reader = openReader(path, 1);
+            source = reader;
+            lines = () -> {
+                String line = reader.readLine();
+                return line == null ? null : line.trim();
+            };
+        } else {
+            MappedPGNReader reader = new MappedPGNReader(path);
+            source = reader;
+            lines = () -> reader.nextLine() ? reader.line() : null;
+        }
+        return StreamSupport.stream(new GameSpliterator(lines), false)
+                .onClose(() -> {
+                    try {
+                        source.close();
+                    } catch (Exception e) {
+                        Util.PGNLogger.error("Error closing PGN file: " + path);
                     }
+                });
+    }
+
+    /**
+     * Trimmed lines of a file, from whatever reader it is read with.
+     */
+    private interface LineSource {
+        /**
+         * @return the next line, or null at the end of the file
+         */
+        CharSequence nextLine() throws IOException;
+    }
+
+    /**
+     * Pulls lines from the reader only until the next game is complete.
+     */
+    private class GameSpliterator implements Spliterator<ParsedGame> {
+        private final LineSource lines;
+        private final Deque<ParsedGame> completed = new ArrayDeque<>();
+        private final ParseSession session = new ParseSession(completed::add);
+        private boolean exhausted = false;
+
+        GameSpliterator(LineSource lines) {
+            this.lines = lines;
+        }
 
-                    // Add header to current collection
-                    state = ParserState.IN_HEADERS;
-                    continue;
+        @Override
+        public boolean tryAdvance(Consumer<? super ParsedGame> action) {
+            try {
+                while (completed.isEmpty() && !exhausted) {
+                    CharSequence line = lines.nextLine();
+                    if (line != null) {
+                        session.acceptLine(line);
+                    } else {
+                        // Process the final game if there is one in progress
+                        session.finish();
+                        exhausted = true;
+                        Util.PGNLogger.info("Completed streaming PGN file.");
+                    }
                 }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            ParsedGame game = completed.poll();
+            if (game == null) {
+                return false;
+            }
+            action.accept(game);
+            return true;
+        }
+
+        @Override
+        public Spliterator<ParsedGame> trySplit() {
+            // Games can only be found by reading sequentially
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    /**
+     * The state machine for a single pass over a file. Lines are pushed in one at a time
+     * (already trimmed), so it does not care where they come from. Every game that parses
+     * successfully is passed to the sink.
+     */
+    private class ParseSession {
+        private final Consumer<ParsedGame> sink;
+        private final Predicate<GameHeaders> filter;
+        private final PGNIndex index; // receives every game's start offset when not null
+        private ParserState state = ParserState.BETWEEN_GAMES;
+        private StringBuilder currentMoves = new StringBuilder();
+        private final GameHeaders.Builder currentHeaders = new GameHeaders.Builder();
+        private GameHeaders gameHeaders = GameHeaders.EMPTY;
+        private int gameCount = 0;
+
+        // File offset of the current game's first line, and of the line being processed (-1 if unknown)
+        private long gameStart = -1;
+        private long lineOffset = -1;
+
+        // Whether completed games go through the parser's deduplicator
+        private boolean deduplicate = true;
+
+        ParseSession(Consumer<ParsedGame> sink) {
+            this(sink, headerFilter, null);
+        }
+
+        ParseSession(Consumer<ParsedGame> sink, Predicate<GameHeaders> filter, PGNIndex index) {
+            this.sink = sink;
+            this.filter = filter;
+            this.index = index;
+        }
 
-                // Detect move section by looking for move numbers or algebraic notation
-                Matcher moveNumberMatcher = moveNumberPattern.matcher(line);
-                if (moveNumberMatcher.find() || containsChessNotation(line)) {
-                    state = ParserState.IN_MOVES;
-                    currentMoves.append(line).append(" ");
-
-                    // Check if this line contains a game result indicator
-                    Matcher resultMatcher = resultPattern.matcher(line);
-                    if (resultMatcher.find()) {
-                        // We've reached the end of a game
-                        processMoves(currentMoves, ++gameCount);
-                        currentMoves = new StringBuilder();
+        void acceptLine(CharSequence line) {
+            acceptLine(line, -1);
+        }
+
+        /**
+         * @param offset file offset where the line starts, needed only when building an index
+         */
+        void acceptLine(CharSequence line, long offset) {
+            // Skip empty lines but don't change state based on them
+            if (line.length() == 0) {
+                return;
+            }
+            lineOffset = offset;
+            if (gameStart < 0) {
+                gameStart = offset;
+            }
+
+            if (state == ParserState.SKIPPING_MOVES) {
+                // Rejected game: only look for its end, a header line or a result at the end of the line
+                if (line.charAt(0) != '[' || !headerPattern.matcher(line).matches()) {
+                    if (endsWithResult(line)) {
+                        skipGame();
                         state = ParserState.BETWEEN_GAMES;
                     }
-                    continue;
+                    return;
                 }
+                skipGame();
+                gameStart = offset;
+                state = ParserState.BETWEEN_GAMES;
+            }
+
+            // Check if this line is a header tag
+            Matcher headerMatcher = headerPattern.matcher(line);
+            if (headerMatcher.matches()) {
+                // Found a header tag
 
-                // If we're already in a move section, continue adding lines
                 if (state == ParserState.IN_MOVES) {
-                    currentMoves.append(line).append(" ");
+                    // If we were in moves and found a header, this is a new game
+                    // Process the completed game first
+                    completeGame();
+                    gameStart = offset;
+                }
+
+                // Add header to current collection
+                currentHeaders.add(headerMatcher.group(1), headerMatcher.group(2));
+                state = ParserState.IN_HEADERS;
+                return;
+            }
 
-                    // Check for end of game
-                    Matcher resultMatcher = resultPattern.matcher(line);
-                    if (resultMatcher.find()) {
-                        processMoves(currentMoves, ++gameCount);
-                        currentMoves = new StringBuilder();
+            // Detect move section by looking for move numbers or algebraic notation
+            Matcher moveNumberMatcher = moveNumberPattern.matcher(line);
+            if (moveNumberMatcher.find() || containsChessNotation(line)) {
+                if (state != ParserState.IN_MOVES && !startMoves()) {
+                    // The header filter rejected this game, its movetext is skipped without tokenizing
+                    state = ParserState.SKIPPING_MOVES;
+                    if (endsWithResult(line)) {
+                        skipGame();
                         state = ParserState.BETWEEN_GAMES;
                     }
+                    return;
                 }
+                state = ParserState.IN_MOVES;
+                currentMoves.append(line).append(" ");
+
+                // Check if this line contains a game result indicator
+                Matcher resultMatcher = resultPattern.matcher(line);
+                if (resultMatcher.find()) {
+                    // We've reached the end of a game
+                    completeGame();
+                    state = ParserState.BETWEEN_GAMES;
+                }
+                return;
             }
 
-            // Process the final game if there is one in progress
-            if (currentMoves.length() > 0) {
-                processMoves(currentMoves, ++gameCount);
+            // If we're already in a move section, continue adding lines
+            if (state == ParserState.IN_MOVES) {
+                currentMoves.append(line).append(" ");
+
+                // Check for end of game
+                Matcher resultMatcher = resultPattern.matcher(line);
+                if (resultMatcher.find()) {
+                    completeGame();
+                    state = ParserState.BETWEEN_GAMES;
+                }
             }
+        }
 
-            Util.PGNLogger.info("Completed parsing PGN file. Successfully parsed " + GameList.size() + " games.");
+        void finish() {
+            if (state == ParserState.SKIPPING_MOVES) {
+                skipGame();
+            } else if (currentMoves.length() > 0) {
+                completeGame();
+            }
+        }
 
-        } catch (IOException e) {
-            Util.PGNLogger.error("Error reading PGN file: " + fileName);
+        /**
+         * The header block has ended: fix the game's headers and ask the filter about it.
+         *
+         * @return false if the game's movetext should be skipped
+         */
+        private boolean startMoves() {
+            gameHeaders = currentHeaders.build();
+            return filter == null || filter.test(gameHeaders);
+        }
+
+        private void completeGame() {
+            List<String> moves = processMoves(currentMoves, ++gameCount);
+            if (moves != null) {
+                MoveTree tree = keepVariations ? MoveTree.parse(currentMoves) : null;
+                ParsedGame game = new ParsedGame(gameCount, gameHeaders, moves, tree);
+                if (!deduplicate || !isDuplicate(game)) {
+                    sink.accept(game);
+                }
+            }
+            endGame();
+            currentMoves = new StringBuilder();
+        }
+
+        private void skipGame() {
+            ++gameCount;
+            // Index-only passes reject every game, they should not log each one
+            if (filter != REJECT_ALL) {
+                Util.PGNLogger.info("Game #" + gameCount + " was skipped by the header filter");
+            }
+            endGame();
+        }
+
+        private void endGame() {
+            if (index != null && gameStart >= 0) {
+                index.add(gameStart, PGNIndex.headerHash(gameHeaders));
+            }
+            gameHeaders = GameHeaders.EMPTY;
+            gameStart = -1;
         }
     }
 
+    /**
+     * Cheap equivalent of resultPattern for a trimmed line: does it end with a game result?
+     */
+    private static boolean endsWithResult(CharSequence line) {
+        int length = line.length();
+        if (line.charAt(length - 1) == '*') {
+            return true;
+        }
+        return endsWith(line, "1-0") || endsWith(line, "0-1") || endsWith(line, "1/2-1/2");
+    }
+
+    private static boolean endsWith(CharSequence line, String suffix) {
+        int offset = line.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (line.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Check if a line contains chess algebraic notation
      * This is a simple heuristic detector
      */
-    private boolean containsChessNotation(String line) {
+    private static boolean containsChessNotation(CharSequence line) {
         // Look for common patterns in algebraic notation
-        Pattern piecePattern = Pattern.compile("[KQRBN][a-h][1-8]");
-        Pattern pawnMovePattern = Pattern.compile("[a-h][1-8]");
-        Pattern capturePattern = Pattern.compile("[KQRBNa-h]x[a-h][1-8]");
-        Pattern castlePattern = Pattern.compile("O-O(-O)?");
-
         return piecePattern.matcher(line).find() ||
                 pawnMovePattern.matcher(line).find() ||
                 capturePattern.matcher(line).find() ||
@@ -371,84 +1157,104 @@ public class PGNParser {
     }
 
     /**
-     * Process moves and add to the moves collection
+     * Process the moves of one game.
+     * Walks the movetext once with a MovetextTokenizer: comments, NAGs, results and
+     * everything inside (possibly nested) variations are dropped, and every move number
+     * must be followed by exactly two moves except the last one, which may have one.
+     *
+     * @return the SAN moves, or null if the game has to be omitted
      */
-    private void processMoves(StringBuilder moveSection, int gameNumber) {
-        String movesText = moveSection.toString().trim();
+    private List<String> processMoves(CharSequence moveSection, int gameNumber) {
+        MovetextTokenizer tokenizer = new MovetextTokenizer(moveSection);
 
-        // Remove game result indicators
-        movesText = movesText.replaceAll("1-0|0-1|1/2-1/2|\\*", "");
-
-        // Remove comments in curly braces and parentheses
-        movesText = movesText.replaceAll("\\{[^}]*\\}", "");
-        movesText = movesText.replaceAll("\\([^)]*\\)", "");
-
-        // Split the move text by move numbers using regex
-        // This captures the move number as group 1 and the move content as group 2
-        Pattern moveNumberPattern = Pattern.compile("(\\d+\\.)(.*?)(?=\\d+\\.|$)");
-        Matcher matcher = moveNumberPattern.matcher(movesText);
-
-        List<String[]> potentialMoves = new ArrayList<>();
         List<String> moveList = new ArrayList<>();
-        while (matcher.find()) {
-            // Get the content after the move number (group 2)
-            String moveContent = matcher.group(2).trim();
-            // Split this content by whitespace to get individual moves
-            potentialMoves.add(moveContent.split("\\s+"));
+        List<String> currentPair = new ArrayList<>(2);
+        int moveNumbers = 0;
+        int variationDepth = 0;
+
+        MovetextTokenizer.TokenType token;
+        while ((token = tokenizer.next()) != MovetextTokenizer.TokenType.END) {
+            switch (token) {
+                case VARIATION_START -> variationDepth++;
+                case VARIATION_END -> variationDepth = Math.max(0, variationDepth - 1);
+                case MOVE_NUMBER -> {
+                    if (variationDepth > 0) {
+                        break;
+                    }
+                    // "2..." after a variation or comment that followed white's 2nd move continues the same pair
+                    if (currentPair.size() == 1 && tokenizer.isContinuation() && tokenizer.moveNumber() == moveNumbers) {
+                        break;
+                    }
+                    // Regular move pairs (all except the last one) must have exactly 2 moves (white and black)
+                    if (moveNumbers > 0 && currentPair.size() != 2) {
+                        reportInconsistency(gameNumber, " contains inconsistencies at move " + moveNumbers
+                                + ". Expected 2 moves but found ", currentPair, moveSection);
+                        return null;
+                    }
+                    moveList.addAll(currentPair);
+                    currentPair.clear();
+                    moveNumbers++;
+                }
+                case SAN -> {
+                    // Anything before the first move number is not part of a move pair
+                    if (variationDepth == 0 && moveNumbers > 0) {
+                        currentPair.add(tokenizer.text());
+                    }
+                }
+                default -> {
+                    // Comments, NAGs and results carry no moves
+                }
+            }
         }
 
         // Check if we found any moves
-        if (potentialMoves.isEmpty()) {
+        if (moveNumbers == 0) {
             Util.PGNLogger.warning("Game #" + gameNumber + " contains no recognizable moves. Skipping.");
-            return;
+            return null;
         }
 
-        for (int i = 0; i < potentialMoves.size(); i++) {
-            String[] move = potentialMoves.get(i);
-            // Regular move pairs (all except the last one)
-            if (i != potentialMoves.size() - 1) {
-                // Must have exactly 2 moves (white and black)
-                if (move.length != 2) {
-                    StringBuilder errorMessage = new StringBuilder();
-                    errorMessage.append("Game #").append(gameNumber)
-                            .append(" contains inconsistencies at move ").append(i + 1)
-                            .append(". Expected 2 moves but found ").append(move.length).append(": ");
+        // Special case: the last move pair can have either 1 move (white only) or 2 moves (white and black)
+        if (currentPair.size() > 2) {
+            reportInconsistency(gameNumber, " contains inconsistencies in last move. Expected 1 or 2 moves but found ",
+                    currentPair, moveSection);
+            return null;
+        }
+        moveList.addAll(currentPair);
 
-                    for (String s : move) {
-                        errorMessage.append(s).append(" ");
-                    }
+        Util.PGNLogger.info("Game #" + gameNumber + " was successfully parsed with " + moveList.size() + " moves");
+        return moveList;
+    }
 
-                    Util.PGNLogger.warning(errorMessage.toString());
-                    Util.PGNLogger.warning("Full game text that will be omitted: " + moveSection);
-                    return;
-                }
-            }
-            // Special case: the last move pair
-            else {
-                // Can have either 1 move (white only) or 2 moves (white and black)
-                if (move.length != 1 && move.length != 2) {
-                    StringBuilder errorMessage = new StringBuilder();
-                    errorMessage.append("Game #").append(gameNumber)
-                            .append(" contains inconsistencies in last move. Expected 1 or 2 moves but found ")
-                            .append(move.length).append(": ");
-
-                    for (String s : move) {
-                        errorMessage.append(s).append(" ");
-                    }
+    private void reportInconsistency(int gameNumber, String problem, List<String> moves, CharSequence moveSection) {
+        StringBuilder errorMessage = new StringBuilder();
+        errorMessage.append("Game #").append(gameNumber).append(problem).append(moves.size()).append(": ");
 
-                    Util.PGNLogger.warning(errorMessage.toString());
-                    Util.PGNLogger.warning("Full game text that will be omitted: " + moveSection);
-                    return;
-                }
-            }
+        for (String s : moves) {
+            errorMessage.append(s).append(" ");
+        }
 
-            for (String s : move) {
-                moveList.add(s.trim());
-            }
+        Util.PGNLogger.warning(errorMessage.toString());
+        Util.PGNLogger.warning("Full game text that will be omitted: " + moveSection);
+    }
+
+    private boolean isDuplicate(ParsedGame game) {
+        if (deduplicator == null || !deduplicator.isDuplicate(game.getHeaders(), game.getMoves())) {
+            return false;
         }
+        Util.PGNLogger.info("Game #" + game.getGameNumber() + " is a duplicate and was skipped");
+        return true;
+    }
 
-        Util.PGNLogger.info("Game #" + gameNumber + " was successfully parsed with " + moveList.size() + " moves");
-        GameList.add(moveList);
+    private void addGame(ParsedGame game) {
+        GameList.add(game.getMoves());
+        HeaderList.add(game.getHeaders());
+    }
+
+    /**
+     * Get the header tags for all games, index-aligned with getGameList()
+     */
+    public List<GameHeaders> getHeaderList() {
+        return HeaderList;
     }
 
     /**
@@ -0,0 +1,71 @@
+package Parser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Numeric ids for PGN tag names. The Seven Tag Roster has fixed ids,
+ * any other tag gets the next free id the first time it is seen.
+ * Ids fit in a short, so the registry stops growing at MAX_TAGS names;
+ * tags seen after that have no id and GameHeaders keeps their names itself.
+ */
+public final class PGNTag {
+    // Seven Tag Roster
+    public static final int EVENT = 0;
+    public static final int SITE = 1;
+    public static final int DATE = 2;
+    public static final int ROUND = 3;
+    public static final int WHITE = 4;
+    public static final int BLACK = 5;
+    public static final int RESULT = 6;
+
+    // Ids are stored as shorts by GameHeaders
+    static final int MAX_TAGS = Short.MAX_VALUE + 1;
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new CopyOnWriteArrayList<>();
+
+    static {
+        for (String name : List.of("Event", "Site", "Date", "Round", "White", "Black", "Result")) {
+            idOf(name);
+        }
+    }
+
+    private PGNTag() {
+    }
+
+    /**
+     * Id of the tag name, registering it if it is new.
+     *
+     * @return the id, or -1 if the name is new and the registry is full
+     */
+    public static int idOf(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NAMES) {
+            if (NAMES.size() >= MAX_TAGS) {
+                return find(name);
+            }
+            return IDS.computeIfAbsent(name, key -> {
+                NAMES.add(key);
+                return NAMES.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Id of the tag name, or -1 if no game has used it yet.
+     */
+    public static int find(String name) {
+        Integer id = IDS.get(name);
+        return id != null ? id : -1;
+    }
+
+    public static String nameOf(int id) {
+        return NAMES.get(id);
+    }
+}
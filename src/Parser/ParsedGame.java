@@ -0,0 +1,55 @@
+package Parser;
+
+import java.util.List;
+
+/**
+ * A single game as it comes out of the PGN parser: its position in the file, its header tags and its SAN moves.
+ */
+public class ParsedGame {
+    private final int gameNumber;        // 1-based position of the game in its file
+    private final GameHeaders headers;   // tag pairs such as Event, White, Black
+    private final List<String> moves;    // SAN moves in playing order, e.g. "e4", "e5", "Nf3"
+    private final MoveTree moveTree;     // main line and variations, null unless the parser keeps variations
+
+    public ParsedGame(int gameNumber, GameHeaders headers, List<String> moves) {
+        this(gameNumber, headers, moves, null);
+    }
+
+    public ParsedGame(int gameNumber, GameHeaders headers, List<String> moves, MoveTree moveTree) {
+        this.gameNumber = gameNumber;
+        this.headers = headers;
+        this.moves = moves;
+        this.moveTree = moveTree;
+    }
+
+    /**
+     * The same game under another number, e.g. its position in the whole file instead of in a range.
+     */
+    ParsedGame withGameNumber(int gameNumber) {
+        return new ParsedGame(gameNumber, headers, moves, moveTree);
+    }
+
+    public int getGameNumber() {
+        return gameNumber;
+    }
+
+    public GameHeaders getHeaders() {
+        return headers;
+    }
+
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    /**
+     * The game's moves with their variations, see PGNParser.setKeepVariations. Null when variations were not kept.
+     */
+    public MoveTree getMoveTree() {
+        return moveTree;
+    }
+
+    @Override
+    public String toString() {
+        return "Game #" + gameNumber + " " + moves;
+    }
+}
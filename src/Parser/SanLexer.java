@@ -0,0 +1,161 @@
+package Parser;
+
+import Model.ChessMove;
+
+/**
+ * Hand-written lexer for a single SAN move, in place of the regular expressions ChessMovesParser used.
+ * <p>
+ * Same grammar as before: the raw text is castling if it is exactly O-O, O-O-O, 0-0 or 0-0-0; otherwise
+ * every '+' and '#' is dropped (setting the check and checkmate flags) and the rest must be
+ * [KQRBN]?[a-h]?[1-8]?x?[a-h][1-8](=[QRBN])?. The lexer reads straight from a slice of any
+ * CharSequence (a String, a CharBuffer over a char[], a mapped byte line) and allocates nothing:
+ * the at most 8 characters left once the check marks are dropped are packed into a long, a byte each.
+ */
+public final class SanLexer {
+    // Longest move the grammar allows, e.g. "Qh4xe1" or "exd8=Q", as many bytes as a long has
+    private static final int MAX_LENGTH = 8;
+
+    private static final String[] FILES = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    private static final String[] RANKS = {"1", "2", "3", "4", "5", "6", "7", "8"};
+
+    private SanLexer() {
+    }
+
+    /**
+     * Fills the move's fields, all but notation, from the SAN move in text[start, end).
+     *
+     * @return false if it is not a SAN move; then only the color and the check flags are set
+     */
+    public static boolean lex(CharSequence text, int start, int end, boolean isWhiteToMove, ChessMove move) {
+        move.color = isWhiteToMove ? "white" : "black";
+
+        if (isCastling(text, start, end)) {
+            int kingRow = isWhiteToMove ? 7 : 0;  // 7 for white (bottom), 0 for black (top)
+            move.pieceType = "King";
+            move.isCastling = true;
+            move.fromRow = kingRow;
+            move.fromCol = 4;
+            move.toRow = kingRow;
+            move.toCol = end - start == 5 ? 2 : 6;  // c-file for queenside, g-file for kingside
+            return true;
+        }
+
+        // Drop check marks wherever they are, like replaceAll("[+#]", "") did
+        long clean = 0;
+        int length = 0;
+        boolean invalid = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '+') {
+                move.isCheck = true;
+            } else if (c == '#') {
+                move.isCheckmate = true;
+            } else if (length < MAX_LENGTH && c < 0x80) {
+                clean |= (long) c << 8 * length++;
+            } else {
+                invalid = true;  // Too long, or a character no SAN move has
+            }
+        }
+        if (invalid) {
+            return false;
+        }
+
+        // Read from the end: the promotion and the destination are at fixed places
+        int position = length;
+        char promotion = 0;
+        if (position >= 2 && at(clean, position - 2) == '=' && isPromotionPiece(at(clean, position - 1))) {
+            promotion = at(clean, position - 1);
+            position -= 2;
+        }
+        if (position < 2 || !isFile(at(clean, position - 2)) || !isRank(at(clean, position - 1))) {
+            return false;
+        }
+        int toCol = at(clean, position - 2) - 'a';
+        int toRow = 8 - (at(clean, position - 1) - '0');
+        position -= 2;
+        boolean capture = position > 0 && at(clean, position - 1) == 'x';
+        if (capture) {
+            position--;
+        }
+
+        // What is left is the piece and the disambiguation, each optional and in this order
+        int i = 0;
+        char piece = 0;
+        if (i < position && isPiece(at(clean, i))) {
+            piece = at(clean, i++);
+        }
+        int file = -1;
+        if (i < position && isFile(at(clean, i))) {
+            file = at(clean, i++) - 'a';
+        }
+        int rank = -1;
+        if (i < position && isRank(at(clean, i))) {
+            rank = at(clean, i++) - '1';
+        }
+        if (i != position) {
+            return false;
+        }
+
+        move.pieceType = piece == 0 ? "Pawn" : pieceName(piece);
+        move.isCapture = capture;
+        move.toCol = toCol;
+        move.toRow = toRow;
+        move.isPromotion = promotion != 0;
+        move.promotionPiece = promotion != 0 ? pieceName(promotion) : null;
+        move.fromCol = file >= 0 ? file : -1;
+        move.fromRow = rank >= 0 ? 7 - rank : -1;
+        move.disambiguationFile = file >= 0 ? FILES[file] : null;
+        move.disambiguationRank = rank >= 0 ? RANKS[rank] : null;
+        return true;
+    }
+
+    // The index-th character packed into clean
+    private static char at(long clean, int index) {
+        return (char) (clean >>> 8 * index & 0xFF);
+    }
+
+    private static boolean isCastling(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length != 3 && length != 5) {
+            return false;
+        }
+        // All O or all 0, never mixed
+        char o = text.charAt(start);
+        if (o != 'O' && o != '0') {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if (text.charAt(start + i) != (i % 2 == 1 ? '-' : o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+
+    private static boolean isPiece(char c) {
+        return c == 'K' || isPromotionPiece(c);
+    }
+
+    private static boolean isPromotionPiece(char c) {
+        return c == 'Q' || c == 'R' || c == 'B' || c == 'N';
+    }
+
+    private static String pieceName(char code) {
+        return switch (code) {
+            case 'K' -> "King";
+            case 'Q' -> "Queen";
+            case 'R' -> "Rook";
+            case 'B' -> "Bishop";
+            case 'N' -> "Knight";
+            default -> "Pawn";
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package Parser;
+
+import Model.ChessMove;
+import Model.PackedMove;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded, thread-safe table of SAN moves that were already parsed, one map per side to move.
+ * <p>
+ * Real games only use a few thousand distinct SAN strings ("Nf3", "O-O", "exd5"), so after warm-up
+ * parsing a move is a hash lookup. The table hands out immutable Tokens; toChessMove() copies one
+ * into a fresh ChessMove, which stays per game because the controller fills in its from-square.
+ * Once a side's map is full, new SAN strings are parsed every time instead of being added.
+ */
+public class SanTable {
+
+    /**
+     * A parsed SAN move, with the same fields ChessMovesParser sets on a ChessMove.
+     */
+    public static final class Token {
+        public final String notation;
+        public final String color;
+        public final String pieceType;
+        public final int fromRow;
+        public final int fromCol;
+        public final int toRow;
+        public final int toCol;
+        public final boolean isCapture;
+        public final boolean isCheck;
+        public final boolean isCheckmate;
+        public final boolean isCastling;
+        public final boolean isPromotion;
+        public final String promotionPiece;
+        public final String disambiguationFile;
+        public final String disambiguationRank;
+        /**
+         * The move as a PackedMove int.
+         */
+        public final int packed;
+        /**
+         * Whether PackedMove.toSan gives back this notation, so a packed game need not keep it.
+         */
+        public final boolean isPackedSanExact;
+
+        Token(ChessMove move) {
+            this.notation = move.notation;
+            this.color = move.color;
+            this.pieceType = move.pieceType;
+            this.fromRow = move.fromRow;
+            this.fromCol = move.fromCol;
+            this.toRow = move.toRow;
+            this.toCol = move.toCol;
+            this.isCapture = move.isCapture;
+            this.isCheck = move.isCheck;
+            this.isCheckmate = move.isCheckmate;
+            this.isCastling = move.isCastling;
+            this.isPromotion = move.isPromotion;
+            this.promotionPiece = move.promotionPiece;
+            this.disambiguationFile = move.disambiguationFile;
+            this.disambiguationRank = move.disambiguationRank;
+            this.packed = PackedMove.pack(move);
+            this.isPackedSanExact = move.notation != null && move.notation.equals(PackedMove.toSan(packed));
+        }
+
+        /**
+         * A new ChessMove with this token's fields, ready for the controller to resolve.
+         */
+        public ChessMove toChessMove() {
+            return copyTo(new ChessMove());
+        }
+
+        /**
+         * Overwrites every field of the given move with this token's, so one ChessMove can be reused.
+         */
+        public ChessMove copyTo(ChessMove move) {
+            move.notation = notation;
+            move.color = color;
+            move.pieceType = pieceType;
+            move.fromRow = fromRow;
+            move.fromCol = fromCol;
+            move.toRow = toRow;
+            move.toCol = toCol;
+            move.isCapture = isCapture;
+            move.isCheck = isCheck;
+            move.isCheckmate = isCheckmate;
+            move.isCastling = isCastling;
+            move.isPromotion = isPromotion;
+            move.promotionPiece = promotionPiece;
+            move.disambiguationFile = disambiguationFile;
+            move.disambiguationRank = disambiguationRank;
+            return move;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Token> white = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Token> black = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final BiFunction<String, Boolean, ChessMove> parser;
+
+    /**
+     * @param capacity maximum number of SAN strings kept per side
+     * @param parser   parses a SAN string for the given side (true for white) on a table miss
+     */
+    public SanTable(int capacity, BiFunction<String, Boolean, ChessMove> parser) {
+        this.capacity = capacity;
+        this.parser = parser;
+    }
+
+    public Token get(String san, boolean isWhiteToMove) {
+        ConcurrentHashMap<String, Token> tokens = isWhiteToMove ? white : black;
+        Token token = tokens.get(san);
+        if (token != null) {
+            return token;
+        }
+        token = new Token(parser.apply(san, isWhiteToMove));
+        if (tokens.size() >= capacity) {
+            return token;
+        }
+        Token shared = tokens.putIfAbsent(san, token);
+        return shared != null ? shared : token;
+    }
+
+    public int size() {
+        return white.size() + black.size();
+    }
+}
@@ -0,0 +1,24 @@
+package Parser;
+
+/**
+ * How far a growing PGN file has been consumed: the byte offset up to which every game has been
+ * committed, and how many games (omitted ones included) were found before it.
+ * Passed back to PGNParser.parseAppended so only appended bytes are parsed.
+ */
+public class TailPosition {
+    private long offset;
+    private int gameCount;
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    void advance(long offset, int gamesFound) {
+        this.offset = offset;
+        this.gameCount += gamesFound;
+    }
+}
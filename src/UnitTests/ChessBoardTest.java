@@ -86,5 +86,181 @@ public class ChessBoardTest {
         assertEquals("black", chessBoard.board[0][0].getColor());
         assertNull(chessBoard.board[3][3]);
     }
-}
 
+    @Test
+    public void testBitboardsFollowTheArray() {
+        // 32 pieces, white on rows 6 and 7
+        assertEquals(32, Long.bitCount(chessBoard.getOccupied()));
+        assertEquals(0xFFFFL << 48, chessBoard.getOccupancy(Model.Color.WHITE));
+        assertEquals(Model.Bitboards.bit(60), chessBoard.getPieces(Model.Color.WHITE, Model.PieceType.KING));
+
+        // Written directly, only seen after Sync
+        chessBoard.board[4][4] = new ChessPiece("Queen", "black");
+        assertTrue(chessBoard.Sync());
+        assertFalse(chessBoard.Sync());
+        assertEquals(Model.Bitboards.bit(36) | Model.Bitboards.bit(3),
+                chessBoard.getPieces(Model.Color.BLACK, Model.PieceType.QUEEN));
+
+        // Through the board the array and the bitboards change together
+        chessBoard.MovePiece(4, 4, 6, 4);
+        assertEquals("Queen", chessBoard.board[6][4].getType());
+        assertNull(chessBoard.board[4][4]);
+        assertEquals(0, chessBoard.getPieces(Model.Color.WHITE, Model.PieceType.PAWN) & Model.Bitboards.bit(52));
+        assertFalse(chessBoard.Sync());
+    }
+
+    @Test
+    public void testSyncKeepsTheHistory() {
+        // Ng1-f3, a move that is not a capture or a pawn move
+        chessBoard.MakeMove(Model.Bitboards.square(7, 6), Model.Bitboards.square(5, 5), null);
+        long before = chessBoard.getKeyHistory()[0];
+
+        chessBoard.board[4][4] = new ChessPiece("Queen", "black");
+        assertTrue(chessBoard.Sync());
+        assertEquals(2, chessBoard.getKeyHistory().length);
+        assertEquals(before, chessBoard.getKeyHistory()[0]);
+        assertEquals(chessBoard.getZobristKey(), chessBoard.getKeyHistory()[1]);
+        assertEquals(1, chessBoard.getHalfmoveClock());
+
+        // The move can still be taken back
+        chessBoard.UnmakeMove();
+        assertEquals("Knight", chessBoard.board[7][6].getType());
+        assertNull(chessBoard.board[5][5]);
+    }
+
+    @Test
+    public void testCompleteMoveTracksPositionState() {
+        assertEquals(Model.Color.WHITE, chessBoard.getSideToMove());
+        assertEquals(15, chessBoard.getCastlingRights());
+
+        // e2-e4 leaves e3 to capture en passant on
+        chessBoard.MovePiece(6, 4, 4, 4);
+        chessBoard.CompleteMove(6, 4, 4, 4, true);
+        assertEquals(Model.Color.BLACK, chessBoard.getSideToMove());
+        assertEquals(Model.Bitboards.square(5, 4), chessBoard.getEnPassantSquare());
+
+        // Moving the h8 rook loses black's kingside castling only
+        chessBoard.SetPiece(0, 6, null);
+        chessBoard.MovePiece(0, 7, 0, 6);
+        chessBoard.CompleteMove(0, 7, 0, 6, false);
+        assertEquals(-1, chessBoard.getEnPassantSquare());
+        assertEquals(15 & ~ChessBoard.BLACK_KINGSIDE, chessBoard.getCastlingRights());
+
+        chessBoard.ResetBoard();
+        assertEquals(Model.Color.WHITE, chessBoard.getSideToMove());
+        assertEquals(15, chessBoard.getCastlingRights());
+    }
+
+    @Test
+    public void testResetSharesPieces() {
+        chessBoard.MovePiece(6, 4, 4, 4);
+        chessBoard.CompleteMove(6, 4, 4, 4, true);
+        chessBoard.ResetBoard();
+
+        // Every game starts from the same immutable pieces, none are made per reset
+        ChessBoard other = new ChessBoard();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                assertSame(other.board[row][col], chessBoard.board[row][col]);
+            }
+        }
+        assertSame(ChessPiece.of(Model.PieceType.PAWN, Model.Color.WHITE), chessBoard.board[6][4]);
+        assertEquals(-1, chessBoard.getEnPassantSquare());
+        assertEquals(other.getOccupied(), chessBoard.getOccupied());
+    }
+
+    @Test
+    public void testZobristKeyIsIncremental() {
+        long start = chessBoard.getZobristKey();
+
+        // 1. Nf3 Nf6 played through the board...
+        chessBoard.MovePiece(7, 6, 5, 5);
+        chessBoard.CompleteMove(7, 6, 5, 5, false);
+        assertNotEquals(start, chessBoard.getZobristKey());
+        chessBoard.MovePiece(0, 6, 2, 5);
+        chessBoard.CompleteMove(0, 6, 2, 5, false);
+
+        // ...gives the key computed from scratch for the same position
+        ChessBoard scratch = new ChessBoard();
+        scratch.board[7][6] = null;
+        scratch.board[5][5] = ChessPiece.of(Model.PieceType.KNIGHT, Model.Color.WHITE);
+        scratch.board[0][6] = null;
+        scratch.board[2][5] = ChessPiece.of(Model.PieceType.KNIGHT, Model.Color.BLACK);
+        scratch.Sync();
+        assertEquals(scratch.getZobristKey(), chessBoard.getZobristKey());
+        assertEquals(3, chessBoard.getKeyHistory().length);
+        assertEquals(start, chessBoard.getKeyHistory()[0]);
+
+        // Castling rights are part of the key
+        chessBoard.SetCastlingRights(0);
+        assertNotEquals(scratch.getZobristKey(), chessBoard.getZobristKey());
+    }
+
+    @Test
+    public void testMagicAttacksMatchRays() {
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 2000; i++) {
+            long occupied = random.nextLong() & random.nextLong();
+            int square = random.nextInt(64);
+            // A square on a ray is attacked when nothing stands in between
+            long rook = 0;
+            long bishop = 0;
+            for (int target = 0; target < 64; target++) {
+                if ((Model.Bitboards.between(square, target) & occupied) != 0) {
+                    continue;
+                }
+                rook |= Model.Bitboards.rookRays(square) & Model.Bitboards.bit(target);
+                bishop |= Model.Bitboards.bishopRays(square) & Model.Bitboards.bit(target);
+            }
+            assertEquals(rook, Model.Bitboards.rookAttacks(square, occupied));
+            assertEquals(bishop, Model.Bitboards.bishopAttacks(square, occupied));
+        }
+    }
+
+    @Test
+    public void testIsAttacked() {
+        // f3 is covered by the g2 pawn and the g1 knight, e4 by nothing yet, f6 by black
+        assertTrue(chessBoard.IsAttacked(Model.Bitboards.square(5, 5), Model.Color.WHITE));
+        assertFalse(chessBoard.IsAttacked(Model.Bitboards.square(4, 4), Model.Color.WHITE));
+        assertTrue(chessBoard.IsAttacked(Model.Bitboards.square(2, 5), Model.Color.BLACK));
+
+        // With the d2 pawn gone the c1 bishop reaches h6
+        int h6 = Model.Bitboards.square(2, 7);
+        assertFalse(chessBoard.IsAttacked(h6, Model.Color.WHITE));
+        chessBoard.SetPiece(6, 3, null);
+        assertTrue(chessBoard.IsAttacked(h6, Model.Color.WHITE));
+    }
+
+    @Test
+    public void testUnmakeMoveRestoresEverything() {
+        ChessBoard start = new ChessBoard();
+
+        // 1. e4 Nf6 2. e5 d5 3. exd6 e.p. e6 4. dxc7 Be7 5. cxb8=Q O-O, as squares (a8 = 0, h1 = 63)
+        int[][] moves = {{52, 36}, {6, 21}, {36, 28}, {11, 27}, {28, 19}, {12, 20}, {19, 10}, {5, 12}, {10, 1}, {4, 6}};
+        for (int[] move : moves) {
+            chessBoard.MakeMove(move[0], move[1], move[0] == 10 ? Model.PieceType.QUEEN : null);
+            if (move[0] == 28) {
+                assertNull("The d5 pawn is taken en passant", chessBoard.board[3][3]);
+            }
+        }
+        assertEquals("Queen", chessBoard.board[0][1].getType());
+        assertEquals("Rook", chessBoard.board[0][5].getType());
+        assertEquals("King", chessBoard.board[0][6].getType());
+        assertEquals(ChessBoard.WHITE_KINGSIDE | ChessBoard.WHITE_QUEENSIDE, chessBoard.getCastlingRights());
+        assertEquals(moves.length, chessBoard.getUndoDepth());
+
+        while (chessBoard.getUndoDepth() > 0) {
+            chessBoard.UnmakeMove();
+        }
+        for (int row = 0; row < 8; row++) {
+            assertArrayEquals(start.board[row], chessBoard.board[row]);
+        }
+        assertEquals(start.getZobristKey(), chessBoard.getZobristKey());
+        assertEquals(start.getOccupied(), chessBoard.getOccupied());
+        assertEquals(start.getCastlingRights(), chessBoard.getCastlingRights());
+        assertEquals(-1, chessBoard.getEnPassantSquare());
+        assertEquals(Model.Color.WHITE, chessBoard.getSideToMove());
+        assertEquals(1, chessBoard.getKeyHistory().length);
+        assertFalse(chessBoard.Sync());
+    }
+}
@@ -179,4 +179,159 @@ public class ChessMovesParserTest {
         assertEquals("a", fileMove.disambiguationFile);
         assertEquals(0, fileMove.fromCol); // a file = 0
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRepeatedMovesAreIndependent() {
+        ChessMove first = ChessMovesParser.parseMove("Nbd2", false);
+        first.fromRow = 0; // resolved by the controller for this game only
+
+        ChessMove second = ChessMovesParser.parseMove("Nbd2", false);
+        assertNotSame(first, second);
+        assertEquals(-1, second.fromRow);
+        assertEquals(1, second.fromCol);
+        assertEquals("black", second.color);
+        assertEquals("white", ChessMovesParser.parseMove("Nbd2", true).color);
+    }
+
+    @Test
+    public void testSanTableIsBounded() {
+        int[] parses = new int[1];
+        SanTable table = new SanTable(2, (san, white) -> {
+            parses[0]++;
+            return ChessMovesParser.parseMove(san, white);
+        });
+
+        SanTable.Token e4 = table.get("e4", true);
+        assertSame(e4, table.get("e4", true));
+        table.get("d4", true);
+        table.get("c4", true);
+        table.get("c4", true);
+        assertEquals(2, table.size());
+        // "c4" did not fit, so it was parsed both times
+        assertEquals(4, parses[0]);
+        assertEquals("Pawn", table.get("c4", true).pieceType);
+    }
+
+    /**
+     * The regular expressions parseMove used before SanLexer, kept as the reference for the differential test.
+     */
+    private static ChessMove regexParseMove(String moveText, boolean isWhiteToMove) {
+        ChessMove move = new ChessMove();
+        move.notation = moveText;
+        move.color = isWhiteToMove ? "white" : "black";
+        if (moveText.matches("O-O(-O)?|0-0(-0)?")) {
+            int kingRow = isWhiteToMove ? 7 : 0;
+            move.pieceType = "King";
+            move.isCastling = true;
+            move.fromRow = kingRow;
+            move.fromCol = 4;
+            move.toRow = kingRow;
+            move.toCol = moveText.contains("-O-O") || moveText.contains("-0-0") ? 2 : 6;
+            return move;
+        }
+        move.isCheck = moveText.contains("+");
+        move.isCheckmate = moveText.contains("#");
+        java.util.regex.Matcher matcher = java.util.regex.Pattern
+                .compile("([KQRBN])?([a-h])?([1-8])?(x)?([a-h][1-8])(=([QRBN]))?")
+                .matcher(moveText.replaceAll("[+#]", ""));
+        if (matcher.matches()) {
+            move.pieceType = matcher.group(1) == null ? "Pawn" : pieceName(matcher.group(1));
+            move.isCapture = matcher.group(4) != null;
+            move.toCol = matcher.group(5).charAt(0) - 'a';
+            move.toRow = 8 - Character.getNumericValue(matcher.group(5).charAt(1));
+            move.isPromotion = matcher.group(6) != null;
+            move.promotionPiece = move.isPromotion ? pieceName(matcher.group(7)) : null;
+            move.disambiguationFile = matcher.group(2);
+            move.disambiguationRank = matcher.group(3);
+            move.fromCol = move.disambiguationFile != null ? move.disambiguationFile.charAt(0) - 'a' : -1;
+            move.fromRow = move.disambiguationRank != null ? 8 - Character.getNumericValue(move.disambiguationRank.charAt(0)) : -1;
+        }
+        return move;
+    }
+
+    private static String pieceName(String code) {
+        return switch (code) {
+            case "K" -> "King";
+            case "Q" -> "Queen";
+            case "R" -> "Rook";
+            case "B" -> "Bishop";
+            case "N" -> "Knight";
+            default -> "Pawn";
+        };
+    }
+
+    private static String describe(ChessMove move) {
+        return move.notation + " " + move.color + " " + move.pieceType + " " + move.fromRow + "," + move.fromCol
+                + " " + move.toRow + "," + move.toCol + " " + move.isCapture + move.isCheck + move.isCheckmate
+                + move.isCastling + move.isPromotion + " " + move.promotionPiece
+                + " " + move.disambiguationFile + " " + move.disambiguationRank;
+    }
+
+    private static void assertLexedLikeRegex(String san) {
+        for (boolean white : new boolean[]{true, false}) {
+            ChessMove lexed = new ChessMove();
+            lexed.notation = san;
+            SanLexer.lex(san, 0, san.length(), white, lexed);
+            assertEquals(describe(regexParseMove(san, white)), describe(lexed));
+        }
+    }
+
+    @Test
+    public void testLexerMatchesRegexOnCorpus() throws Exception {
+        // Every token of every test PGN, headers and comments included, so malformed input is covered too
+        int tokens = 0;
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(java.nio.file.Paths.get("src", "testPgns"))) {
+            for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files::iterator) {
+                MovetextTokenizer tokenizer = new MovetextTokenizer(java.nio.file.Files.readString(file));
+                while (tokenizer.next() != MovetextTokenizer.TokenType.END) {
+                    assertLexedLikeRegex(tokenizer.text());
+                    tokens++;
+                }
+            }
+        }
+        assertTrue(tokens > 1000);
+
+        for (String san : List.of("O-O+", "O-O-O#", "0-0-0", "O-0", "O-O-O-O", "e8=Q+", "exd8=N#", "e8=K", "e8Q",
+                "Qh4xe1", "Qh4xe1+#", "N+f3", "R1e2", "Nbd2", "Kx", "e9", "xe4", "", "Qd8#", "a1=R", "bxa1=B")) {
+            assertLexedLikeRegex(san);
+        }
+    }
+
+    @Test
+    public void testPackedGameMatchesParse() throws Exception {
+        List<String> sans = new java.util.ArrayList<>(List.of("O-O+", "0-0-0", "Qh4xe1+#", "N+f3", "e8Q", "", "exd8=N#", "R1e2"));
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.list(java.nio.file.Paths.get("src", "testPgns"))) {
+            for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files::iterator) {
+                MovetextTokenizer tokenizer = new MovetextTokenizer(java.nio.file.Files.readString(file));
+                while (tokenizer.next() != MovetextTokenizer.TokenType.END) {
+                    sans.add(tokenizer.text());
+                }
+            }
+        }
+
+        List<ChessMove> moves = ChessMovesParser.parse(sans);
+        Model.PackedGame packed = ChessMovesParser.parsePacked(sans);
+        assertEquals(moves.size(), packed.size());
+        ChessMove scratch = new ChessMove();
+        for (int ply = 0; ply < moves.size(); ply++) {
+            assertEquals(describe(moves.get(ply)), describe(packed.toChessMove(ply, scratch)));
+            assertEquals(moves.get(ply).notation, packed.getSanMoves().get(ply));
+        }
+    }
+
+    @Test
+    public void testLexerReadsSlices() {
+        char[] movetext = "12. Nbxd7+ Qxd7".toCharArray();
+        ChessMove move = new ChessMove();
+        assertTrue(SanLexer.lex(java.nio.CharBuffer.wrap(movetext), 4, 10, true, move));
+        assertEquals("Knight", move.pieceType);
+        assertEquals("b", move.disambiguationFile);
+        assertEquals(1, move.fromCol);
+        assertEquals(1, move.toRow);
+        assertEquals(3, move.toCol);
+        assertTrue(move.isCapture);
+        assertTrue(move.isCheck);
+
+        assertFalse(SanLexer.lex("12. Nbxd7+", 0, 3, false, new ChessMove()));
+    }
+}
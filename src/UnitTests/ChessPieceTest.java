@@ -14,16 +14,26 @@ public class ChessPieceTest {
         ChessPiece pawn = new ChessPiece("Pawn", "white");
         assertEquals("Pawn", pawn.getType());
         assertEquals("white", pawn.getColor());
-        assertFalse(pawn.IsMoved());
     }
 
     @Test
-    public void testSetMoved() {
-        ChessPiece king = new ChessPiece("King", "black");
-        assertFalse(king.IsMoved());
+    public void testSharedPieces() {
+        ChessPiece king = ChessPiece.of(Model.PieceType.KING, Model.Color.BLACK);
+        assertTrue(king == ChessPiece.of(Model.PieceType.KING, Model.Color.BLACK));
+        assertFalse(king == ChessPiece.of(Model.PieceType.KING, Model.Color.WHITE));
+        assertEquals("King", king.getType());
+        assertEquals("black", king.getColor());
+    }
 
-        king.SetMoved();
-        assertTrue(king.IsMoved());
+    @Test
+    public void testEnumAndNameAgree() {
+        ChessPiece knight = new ChessPiece(Model.PieceType.KNIGHT, Model.Color.BLACK);
+        assertEquals("Knight", knight.getType());
+        assertEquals("black", knight.getColor());
+        assertEquals(Model.PieceType.QUEEN, new ChessPiece("Queen", "white").getPieceType());
+        assertEquals(Model.Color.WHITE, new ChessPiece("Queen", "white").getPieceColor());
+        assertEquals(Model.Color.WHITE, Model.Color.BLACK.opposite());
+        assertEquals(null, Model.PieceType.of("Unknown"));
     }
 
     @Test
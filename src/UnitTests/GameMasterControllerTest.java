@@ -24,70 +24,85 @@ public class GameMasterControllerTest {
     }
 
     @Test
-    public void testGetCandidateLocations() throws Exception {
+    public void testReachFindsThePiecesThatGetThere() throws Exception {
         // Use reflection to access private method
         java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "GetCandidateLocations", String.class, String.class);
+                "Reach", Model.Color.class, Model.PieceType.class, int.class, boolean.class, boolean.class);
         method.setAccessible(true);
 
-        // Test finding white pawns
-        @SuppressWarnings("unchecked")
-        List<int[]> whitePawns = (List<int[]>) method.invoke(controller, "white", "Pawn");
-        assertEquals(8, whitePawns.size());
-
-        // Check one of the pawn locations
-        boolean foundPawn = false;
-        for (int[] location : whitePawns) {
-            if (location[0] == 6 && location[1] == 0) { // a2 pawn
-                foundPawn = true;
-                break;
-            }
+        // e2 steps to e3 and e4, nothing captures onto an empty square
+        long reach = (long) method.invoke(controller, Model.Color.WHITE, Model.PieceType.PAWN, Model.Bitboards.square(4, 4), false, true);
+        assertEquals(Model.Bitboards.bit(Model.Bitboards.square(6, 4)), reach);
+        reach = (long) method.invoke(controller, Model.Color.WHITE, Model.PieceType.PAWN, Model.Bitboards.square(5, 3), true, false);
+        assertEquals(0, reach);
+
+        // Both knights reach a square between them, none lands on its own piece
+        reach = (long) method.invoke(controller, Model.Color.BLACK, Model.PieceType.KNIGHT, Model.Bitboards.square(2, 2), false, true);
+        assertEquals(Model.Bitboards.bit(Model.Bitboards.square(0, 1)), reach);
+        reach = (long) method.invoke(controller, Model.Color.WHITE, Model.PieceType.KNIGHT, Model.Bitboards.square(6, 3), false, true);
+        assertEquals(0, reach);
+
+        // The king is boxed in at the start
+        reach = (long) method.invoke(controller, Model.Color.BLACK, Model.PieceType.KING, Model.Bitboards.square(1, 4), false, true);
+        assertEquals(0, reach);
+    }
+
+    /**
+     * Plays the move from the given square through the controller, as a SAN move naming that square
+     * would be, and takes it back if it was played.
+     *
+     * @return whether the controller accepted it
+     */
+    private boolean plays(String color, String type, int fromRow, int fromCol, int toRow, int toCol) throws Exception {
+        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod("MakeMove", ChessMove.class);
+        method.setAccessible(true);
+
+        ChessMove move = new ChessMove();
+        move.color = color;
+        move.pieceType = type;
+        move.fromRow = fromRow;
+        move.fromCol = fromCol;
+        move.toRow = toRow;
+        move.toCol = toCol;
+        move.disambiguationFile = String.valueOf((char) ('a' + fromCol));
+        move.disambiguationRank = String.valueOf(8 - fromRow);
+        move.isCapture = board.board[toRow][toCol] != null;
+        move.notation = move.disambiguationFile + move.disambiguationRank + (move.isCapture ? "x" : "-")
+                + (char) ('a' + toCol) + (8 - toRow);
+
+        method.invoke(controller, move);
+        boolean played = controller.errorReport.isEmpty();
+        if (played) {
+            board.UnmakeMove();
         }
-        assertTrue("Should find white pawn at a2", foundPawn);
-
-        // Test finding black kings
-        @SuppressWarnings("unchecked")
-        List<int[]> blackKings = (List<int[]>) method.invoke(controller, "black", "King");
-        assertEquals(1, blackKings.size());
-        assertEquals(0, blackKings.get(0)[0]); // Row 0
-        assertEquals(4, blackKings.get(0)[1]); // Column 4 (e file)
+        return played;
     }
 
     @Test
     public void testCanPawnMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canPawnMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Test white pawn moving forward one square
-        boolean canMove = (boolean) method.invoke(controller, "white", 6, 4, 5, 4);
+        boolean canMove = plays("white", "Pawn", 6, 4, 5, 4);
         assertTrue("White pawn should be able to move forward one square", canMove);
 
         // Test white pawn moving forward two squares on first move
-        canMove = (boolean) method.invoke(controller, "white", 6, 4, 4, 4);
+        canMove = plays("white", "Pawn", 6, 4, 4, 4);
         assertTrue("White pawn should be able to move forward two squares on first move", canMove);
 
         // Test black pawn moving forward one square
-        canMove = (boolean) method.invoke(controller, "black", 1, 4, 2, 4);
+        canMove = plays("black", "Pawn", 1, 4, 2, 4);
         assertTrue("Black pawn should be able to move forward one square", canMove);
 
         // Test pawn moving sideways (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 6, 4, 6, 5);
+        canMove = plays("white", "Pawn", 6, 4, 6, 5);
         assertFalse("Pawn should not be able to move sideways", canMove);
 
         // Test pawn moving backward (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 6, 4, 7, 4);
+        canMove = plays("white", "Pawn", 6, 4, 7, 4);
         assertFalse("Pawn should not be able to move backward", canMove);
     }
 
     @Test
     public void testCanRookMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canRookMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Clear the board except for the white rook at a1
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -97,41 +112,36 @@ public class GameMasterControllerTest {
         board.board[7][0] = new ChessPiece("Rook", "white"); // White rook at a1
 
         // Test rook moving horizontally
-        boolean canMove = (boolean) method.invoke(controller, "white", 7, 0, 7, 4);
+        boolean canMove = plays("white", "Rook", 7, 0, 7, 4);
         assertTrue("Rook should be able to move horizontally", canMove);
 
         // Test rook moving vertically
-        canMove = (boolean) method.invoke(controller, "white", 7, 0, 3, 0);
+        canMove = plays("white", "Rook", 7, 0, 3, 0);
         assertTrue("Rook should be able to move vertically", canMove);
 
         // Test rook moving diagonally (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 0, 5, 2);
+        canMove = plays("white", "Rook", 7, 0, 5, 2);
         assertFalse("Rook should not be able to move diagonally", canMove);
 
         // Test with obstacle in path
         board.board[7][2] = new ChessPiece("Pawn", "white"); // White pawn at c1
-        canMove = (boolean) method.invoke(controller, "white", 7, 0, 7, 4);
+        canMove = plays("white", "Rook", 7, 0, 7, 4);
         assertFalse("Rook should not be able to move through other pieces", canMove);
 
         // Test with enemy piece at destination (capture)
         board.board[7][2] = null; // Remove the obstacle
         board.board[7][4] = new ChessPiece("Pawn", "black"); // Black pawn at e1
-        canMove = (boolean) method.invoke(controller, "white", 7, 0, 7, 4);
+        canMove = plays("white", "Rook", 7, 0, 7, 4);
         assertTrue("Rook should be able to capture enemy piece", canMove);
 
         // Test with friendly piece at destination (invalid)
         board.board[7][4] = new ChessPiece("Pawn", "white"); // White pawn at e1
-        canMove = (boolean) method.invoke(controller, "white", 7, 0, 7, 4);
+        canMove = plays("white", "Rook", 7, 0, 7, 4);
         assertFalse("Rook should not be able to capture friendly piece", canMove);
     }
 
     @Test
     public void testCanBishopMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canBishopMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Clear the board except for the white bishop at c1
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -141,32 +151,27 @@ public class GameMasterControllerTest {
         board.board[7][2] = new ChessPiece("Bishop", "white"); // White bishop at c1
 
         // Test bishop moving diagonally
-        boolean canMove = (boolean) method.invoke(controller, "white", 7, 2, 5, 0);
+        boolean canMove = plays("white", "Bishop", 7, 2, 5, 0);
         assertTrue("Bishop should be able to move diagonally", canMove);
 
         // Test bishop moving horizontally (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 2, 7, 5);
+        canMove = plays("white", "Bishop", 7, 2, 7, 5);
         assertFalse("Bishop should not be able to move horizontally", canMove);
 
         // Test with obstacle in path
         board.board[6][1] = new ChessPiece("Pawn", "white"); // White pawn at b2
-        canMove = (boolean) method.invoke(controller, "white", 7, 2, 5, 0);
+        canMove = plays("white", "Bishop", 7, 2, 5, 0);
         assertFalse("Bishop should not be able to move through other pieces", canMove);
 
         // Test with enemy piece at destination (capture)
         board.board[6][1] = null; // Remove the obstacle
         board.board[5][0] = new ChessPiece("Pawn", "black"); // Black pawn at a3
-        canMove = (boolean) method.invoke(controller, "white", 7, 2, 5, 0);
+        canMove = plays("white", "Bishop", 7, 2, 5, 0);
         assertTrue("Bishop should be able to capture enemy piece", canMove);
     }
 
     @Test
     public void testCanKnightMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canKnightMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Clear the board except for the white knight at b1
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -176,44 +181,39 @@ public class GameMasterControllerTest {
         board.board[7][1] = new ChessPiece("Knight", "white"); // White knight at b1
 
         // Test knight moving in L-shape (2,1)
-        boolean canMove = (boolean) method.invoke(controller, "white", 7, 1, 5, 2);
+        boolean canMove = plays("white", "Knight", 7, 1, 5, 2);
         assertTrue("Knight should be able to move in L-shape (2,1)", canMove);
 
         // Test knight moving in L-shape (1,2)
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 6, 3);
+        canMove = plays("white", "Knight", 7, 1, 6, 3);
         assertTrue("Knight should be able to move in L-shape (1,2)", canMove);
 
         // Test knight moving horizontally (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 7, 3);
+        canMove = plays("white", "Knight", 7, 1, 7, 3);
         assertFalse("Knight should not be able to move horizontally", canMove);
 
         // Test knight moving diagonally (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 6, 2);
+        canMove = plays("white", "Knight", 7, 1, 6, 2);
         assertFalse("Knight should not be able to move diagonally", canMove);
 
         // Test with piece in path (knight can jump over)
         board.board[6][1] = new ChessPiece("Pawn", "white"); // White pawn at b2
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 5, 2);
+        canMove = plays("white", "Knight", 7, 1, 5, 2);
         assertTrue("Knight should be able to jump over other pieces", canMove);
 
         // Test with friendly piece at destination (invalid)
         board.board[5][2] = new ChessPiece("Pawn", "white"); // White pawn at c3
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 5, 2);
+        canMove = plays("white", "Knight", 7, 1, 5, 2);
         assertFalse("Knight should not be able to capture friendly piece", canMove);
 
         // Test with enemy piece at destination (capture)
         board.board[5][2] = new ChessPiece("Pawn", "black"); // Black pawn at c3
-        canMove = (boolean) method.invoke(controller, "white", 7, 1, 5, 2);
+        canMove = plays("white", "Knight", 7, 1, 5, 2);
         assertTrue("Knight should be able to capture enemy piece", canMove);
     }
 
     @Test
     public void testCanQueenMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canQueenMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Clear the board except for the white queen at d1
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -223,34 +223,29 @@ public class GameMasterControllerTest {
         board.board[7][3] = new ChessPiece("Queen", "white"); // White queen at d1
 
         // Test queen moving horizontally
-        boolean canMove = (boolean) method.invoke(controller, "white", 7, 3, 7, 7);
+        boolean canMove = plays("white", "Queen", 7, 3, 7, 7);
         assertTrue("Queen should be able to move horizontally", canMove);
 
         // Test queen moving vertically
-        canMove = (boolean) method.invoke(controller, "white", 7, 3, 3, 3);
+        canMove = plays("white", "Queen", 7, 3, 3, 3);
         assertTrue("Queen should be able to move vertically", canMove);
 
         // Test queen moving diagonally
-        canMove = (boolean) method.invoke(controller, "white", 7, 3, 4, 0);
+        canMove = plays("white", "Queen", 7, 3, 4, 0);
         assertTrue("Queen should be able to move diagonally", canMove);
 
         // Test queen moving in L-shape (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 3, 5, 4);
+        canMove = plays("white", "Queen", 7, 3, 5, 4);
         assertFalse("Queen should not be able to move in L-shape", canMove);
 
         // Test with obstacle in path
         board.board[7][5] = new ChessPiece("Pawn", "white"); // White pawn at f1
-        canMove = (boolean) method.invoke(controller, "white", 7, 3, 7, 7);
+        canMove = plays("white", "Queen", 7, 3, 7, 7);
         assertFalse("Queen should not be able to move through other pieces", canMove);
     }
 
     @Test
     public void testCanKingMove() throws Exception {
-        // Use reflection to access private method
-        java.lang.reflect.Method method = GameMasterController.class.getDeclaredMethod(
-                "canKingMove", String.class, int.class, int.class, int.class, int.class);
-        method.setAccessible(true);
-
         // Clear the board except for the white king at e1
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
@@ -260,29 +255,29 @@ public class GameMasterControllerTest {
         board.board[7][4] = new ChessPiece("King", "white"); // White king at e1
 
         // Test king moving one square horizontally
-        boolean canMove = (boolean) method.invoke(controller, "white", 7, 4, 7, 5);
+        boolean canMove = plays("white", "King", 7, 4, 7, 5);
         assertTrue("King should be able to move one square horizontally", canMove);
 
         // Test king moving one square vertically
-        canMove = (boolean) method.invoke(controller, "white", 7, 4, 6, 4);
+        canMove = plays("white", "King", 7, 4, 6, 4);
         assertTrue("King should be able to move one square vertically", canMove);
 
         // Test king moving one square diagonally
-        canMove = (boolean) method.invoke(controller, "white", 7, 4, 6, 5);
+        canMove = plays("white", "King", 7, 4, 6, 5);
         assertTrue("King should be able to move one square diagonally", canMove);
 
         // Test king moving two squares (invalid)
-        canMove = (boolean) method.invoke(controller, "white", 7, 4, 7, 6);
+        canMove = plays("white", "King", 7, 4, 7, 6);
         assertFalse("King should not be able to move two squares", canMove);
 
         // Test with friendly piece at destination (invalid)
         board.board[6][5] = new ChessPiece("Pawn", "white"); // White pawn at f2
-        canMove = (boolean) method.invoke(controller, "white", 7, 4, 6, 5);
+        canMove = plays("white", "King", 7, 4, 6, 5);
         assertFalse("King should not be able to capture friendly piece", canMove);
 
         // Test with enemy piece at destination (capture)
         board.board[6][5] = new ChessPiece("Pawn", "black"); // Black pawn at f2
-        canMove = (boolean) method.invoke(controller, "white", 7, 4, 6, 5);
+        canMove = plays("white", "King", 7, 4, 6, 5);
         assertTrue("King should be able to capture enemy piece", canMove);
     }
 
@@ -339,8 +334,10 @@ public class GameMasterControllerTest {
 
         // Test when king has moved
         board.board[7][1] = null; // Remove the obstacle
-        ChessPiece king = board.board[7][4];
-        king.SetMoved(); // Mark king as moved
+        board.MovePiece(7, 4, 7, 5); // King steps to f1 and back
+        board.CompleteMove(7, 4, 7, 5, false);
+        board.MovePiece(7, 5, 7, 4);
+        board.CompleteMove(7, 5, 7, 4, false);
         canCastle = (boolean) method.invoke(controller, kingsideCastle);
         assertFalse("King should not be able to castle after moving", canCastle);
     }
@@ -400,4 +397,112 @@ public class GameMasterControllerTest {
         assertEquals("Pawn", board.board[3][4].getType());
         assertEquals("white", board.board[3][4].getColor());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEvaluatePackedGame() {
+        controller.setPackedGame(Parser.ChessMovesParser.parsePacked(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6")));
+        controller.Evaluate();
+
+        assertTrue(controller.errorReport.isEmpty());
+        assertEquals("Bishop", board.board[3][1].getType());
+        assertEquals("Knight", board.board[2][2].getType());
+        assertEquals("Pawn", board.board[2][0].getType());
+        assertNull(board.board[7][5]);
+    }
+
+    @Test
+    public void testEvaluateSanStopsAtFirstViolation() {
+        controller.EvaluateSan(List.of("e4", "e5", "Ke3", "Nc6", "Nf3"));
+
+        assertTrue(controller.errorReport.toString().contains("Ke3"));
+        assertEquals("King", board.board[7][4].getType());
+        assertEquals("Pawn", board.board[4][4].getType());
+        // Nothing after the violation was played
+        assertNotNull(board.board[0][1]);
+        assertNull(board.board[5][5]);
+
+        controller.EvaluateSan(List.of("d4", "", "d5", "c4"));
+        assertTrue(controller.errorReport.isEmpty());
+    }
+
+    @Test
+    public void testRepetitionAndFiftyMoveRule() {
+        controller.EvaluateSan(List.of("Nf3", "Nf6", "Ng1", "Ng8", "Nf3", "Nf6", "Ng1", "Ng8"));
+        // The start position, for the third time
+        assertTrue(controller.errorReport.isEmpty());
+        assertTrue(board.IsThreefoldRepetition());
+        assertEquals(new ChessBoard().getZobristKey(), board.getZobristKey());
+        assertEquals(8, board.getHalfmoveClock());
+        assertFalse(board.IsFiftyMoveRule());
+
+        // A pawn move starts the count again, and the position can't repeat anymore
+        controller.EvaluateSan(List.of("e4"));
+        assertEquals(0, board.getHalfmoveClock());
+        assertFalse(board.IsThreefoldRepetition());
+    }
+
+    @Test
+    public void testEnPassantCapture() {
+        controller.EvaluateSan(List.of("e4", "Nf6", "e5", "d5", "exd6"));
+
+        assertTrue(controller.errorReport.isEmpty());
+        assertEquals("Pawn", board.board[2][3].getType());
+        // The d5 pawn was taken
+        assertNull(board.board[3][3]);
+    }
+
+    @Test
+    public void testResolvesSanFromTheDestination() {
+        // Both knights reach e4, but the one on c3 is pinned by the b4 bishop
+        board.LoadFen("4k3/8/8/8/1b6/2N3N1/8/4K3 w - - 0 1");
+        controller.EvaluateSan(List.of("Ne4"));
+        assertTrue(controller.errorReport.isEmpty());
+        assertEquals("Knight", board.board[5][2].getType());
+        assertNull(board.board[5][6]);
+
+        // Without the pin the move does not say which knight
+        board.LoadFen("4k3/8/8/8/8/2N3N1/8/4K3 w - - 0 1");
+        controller.EvaluateSan(List.of("Ne4"));
+        assertTrue(controller.errorReport.toString().contains("Ambiguous move Ne4"));
+        assertNull(board.board[4][4]);
+
+        board.ResetBoard();
+        controller.EvaluateSan(List.of("Nd4"));
+        assertTrue(controller.errorReport.toString().contains("No white Knight can reach d4"));
+    }
+
+    @Test
+    public void testPromotionCapturesOnlyWithAnX() {
+        // The c7 pawn can step to c8 or take the rook on d8, but only a move written with x takes
+        board.LoadFen("3r4/2P1k3/8/8/8/8/8/4K3 w - - 0 1");
+        controller.EvaluateSan(List.of("d8=Q"));
+        assertTrue(controller.errorReport.toString().contains("No white Pawn can reach d8"));
+        assertEquals("Rook", board.board[0][3].getType());
+
+        controller.EvaluateSan(List.of("cxd8=Q+"));
+        assertTrue(controller.errorReport.isEmpty());
+        assertEquals("Queen", board.board[0][3].getType());
+        assertNull(board.board[1][2]);
+
+        // And a promotion written with x needs something to take
+        board.LoadFen("3r4/2P1k3/8/8/8/8/8/4K3 w - - 0 1");
+        controller.EvaluateSan(List.of("cxb8=Q"));
+        assertTrue(controller.errorReport.toString().contains("No white Pawn can reach b8"));
+        controller.EvaluateSan(List.of("c8=N+"));
+        assertTrue(controller.errorReport.isEmpty());
+        assertEquals("Knight", board.board[0][2].getType());
+    }
+
+    @Test
+    public void testEvaluateTreeValidatesEachVariation() {
+        // 2... Bb4 is fine in its own line, 2. Ke2 Ke7 3. Kd4 is illegal, 1... Nf5 has no knight that reaches f5
+        Parser.MoveTree tree = Parser.MoveTree.parse(
+                "1. e4 e5 (1... Nf5) 2. Nf3 (2. Ke2 Ke7 3. Kd4) 2... Nc6 (2... Bb4) 3. Bb5 *");
+
+        assertEquals(2, controller.EvaluateTree(tree));
+
+        // The controller's own board stays at the start position
+        assertNotNull(board.board[6][4]);
+        assertNull(board.board[4][4]);
+    }
+}
@@ -0,0 +1,101 @@
+package Parser;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the MappedPGNReader class.
+ */
+public class MappedPGNReaderTest {
+
+    private static final String PGN = "[Event \"Test\"]\r\n" +
+            "[Result \"1-0\"]\r\n" +
+            "\r\n" +
+            "  1. e4 e5 2. Nf3 Nc6  \n" +
+            "3. Bb5 a6 1-0";
+
+    private List<String> readAll(Path path, long windowSize) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (MappedPGNReader reader = new MappedPGNReader(path, 0, -1, windowSize)) {
+            while (reader.nextLine()) {
+                lines.add(reader.line().toString());
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLinesAreTrimmed() throws Exception {
+        Path file = Files.createTempFile("mapped", ".pgn");
+        Files.writeString(file, PGN);
+
+        List<String> lines = readAll(file, MappedPGNReader.DEFAULT_WINDOW_SIZE);
+
+        assertEquals(5, lines.size());
+        assertEquals("[Event \"Test\"]", lines.get(0));
+        assertEquals("", lines.get(2));
+        assertEquals("1. e4 e5 2. Nf3 Nc6", lines.get(3));
+        assertEquals("3. Bb5 a6 1-0", lines.get(4));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testLinesCrossingWindowBoundaries() throws Exception {
+        Path file = Files.createTempFile("mapped", ".pgn");
+        Files.writeString(file, PGN);
+
+        // Windows barely longer than a line force the reader to slide on almost every line
+        assertEquals(readAll(file, MappedPGNReader.DEFAULT_WINDOW_SIZE), readAll(file, 30));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testParsingMatchesReaderBasedParsing() throws Exception {
+        Path file = Files.createTempFile("mapped", ".pgn");
+        Files.writeString(file, PGN + "\n\n" + PGN);
+
+        PGNParser readerParser = new PGNParser();
+        readerParser.parsePGNFile(file.toString());
+        PGNParser mappedParser = new PGNParser();
+        mappedParser.parsePGNFileMapped(file.toString());
+
+        assertEquals(2, mappedParser.getGameList().size());
+        assertEquals(readerParser.getGameList(), mappedParser.getGameList());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testNonAsciiTextParsesLikeReaderBasedParsing() throws Exception {
+        Path file = Files.createTempFile("mapped", ".pgn");
+        // Accents in a header and a comment, a dash and figurines where the moves are
+        Files.writeString(file, "[White \"Müller, Jörg\"]\n[Result \"1-0\"]\n\n"
+                + "1. e4 {Très bien – gut} e5 2. Nf3 Nc6 1-0\n\n"
+                + "[White \"Ström\"]\n\n1. d4 d5 2. ♘f3 ♞f6 1-0\n", java.nio.charset.StandardCharsets.UTF_8);
+
+        PGNParser readerParser = new PGNParser();
+        readerParser.parsePGNFile(file.toString());
+        PGNParser mappedParser = new PGNParser();
+        mappedParser.parsePGNFileMapped(file.toString());
+
+        assertEquals(readerParser.getGameList(), mappedParser.getGameList());
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6"), mappedParser.getGameList().get(0));
+        assertEquals(readerParser.getHeaderList().size(), mappedParser.getHeaderList().size());
+        for (int i = 0; i < mappedParser.getHeaderList().size(); i++) {
+            assertEquals(readerParser.getHeaderList().get(i).get(PGNTag.WHITE), mappedParser.getHeaderList().get(i).get(PGNTag.WHITE));
+        }
+        assertEquals("Müller, Jörg", mappedParser.getHeaderList().get(0).get(PGNTag.WHITE));
+
+        try (MappedPGNReader reader = new MappedPGNReader(file)) {
+            reader.nextLine();
+            assertEquals("[White \"Müller, Jörg\"]", reader.line().toString());
+            assertEquals('ü', reader.line().charAt(9));
+        }
+        Files.delete(file);
+    }
+}
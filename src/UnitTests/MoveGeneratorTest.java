@@ -0,0 +1,69 @@
+package Model;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the MoveGenerator class: perft against the published counts of the standard positions.
+ * Bonuse.PerftBenchmark runs the same positions deeper.
+ */
+public class MoveGeneratorTest {
+
+    private static long perft(String fen, int depth) {
+        ChessBoard board = new ChessBoard();
+        board.LoadFen(fen);
+        return MoveGenerator.perft(board, depth);
+    }
+
+    @Test
+    public void testStartPosition() {
+        ChessBoard board = new ChessBoard();
+        assertEquals(20, MoveGenerator.perft(board, 1));
+        assertEquals(400, MoveGenerator.perft(board, 2));
+        assertEquals(8902, MoveGenerator.perft(board, 3));
+        // Perft leaves the board as it was
+        assertEquals(new ChessBoard().getZobristKey(), board.getZobristKey());
+    }
+
+    @Test
+    public void testKiwipete() {
+        // Castling both ways, pins, en passant and promotions
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        assertEquals(48, perft(fen, 1));
+        assertEquals(2039, perft(fen, 2));
+        assertEquals(97862, perft(fen, 3));
+    }
+
+    @Test
+    public void testEndgamePins() {
+        // En passant that would leave the king in check along the row
+        String fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+        assertEquals(14, perft(fen, 1));
+        assertEquals(191, perft(fen, 2));
+        assertEquals(2812, perft(fen, 3));
+        assertEquals(43238, perft(fen, 4));
+    }
+
+    @Test
+    public void testPromotionsAndChecks() {
+        assertEquals(9467, perft("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 3));
+        assertEquals(62379, perft("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3));
+    }
+
+    @Test
+    public void testLoadFen() {
+        ChessBoard board = new ChessBoard();
+        board.LoadFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        assertEquals(Color.BLACK, board.getSideToMove());
+        assertEquals(Bitboards.square(5, 4), board.getEnPassantSquare());
+        assertEquals("Pawn", board.board[4][4].getType());
+        assertNull(board.board[6][4]);
+
+        try {
+            board.LoadFen("rnbqkbnr/pppppppp/8/8 w KQkq -");
+            fail("A FEN with four rows should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package Parser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the MovetextTokenizer class.
+ */
+public class MovetextTokenizerTest {
+
+    private List<String> tokenize(String movetext) {
+        MovetextTokenizer tokenizer = new MovetextTokenizer(movetext);
+        List<String> tokens = new ArrayList<>();
+        MovetextTokenizer.TokenType type;
+        while ((type = tokenizer.next()) != MovetextTokenizer.TokenType.END) {
+            tokens.add(type + ":" + tokenizer.text());
+        }
+        return tokens;
+    }
+
+    @Test
+    public void testMoveNumbersWithoutSpaces() {
+        assertEquals(List.of("MOVE_NUMBER:1.", "SAN:e4", "SAN:e5", "MOVE_NUMBER:2.", "SAN:Nf3"),
+                tokenize("1.e4 e5 2.Nf3"));
+    }
+
+    @Test
+    public void testBlackContinuation() {
+        MovetextTokenizer tokenizer = new MovetextTokenizer("12...Nf6");
+        assertEquals(MovetextTokenizer.TokenType.MOVE_NUMBER, tokenizer.next());
+        assertEquals("12...", tokenizer.text());
+        assertEquals(12, tokenizer.moveNumber());
+        assertEquals(MovetextTokenizer.TokenType.SAN, tokenizer.next());
+        assertEquals("Nf6", tokenizer.text());
+    }
+
+    @Test
+    public void testCommentsNagsAndVariations() {
+        assertEquals(List.of("MOVE_NUMBER:1.", "SAN:e4", "NAG:$1", "COMMENT:{best (by test)}",
+                        "VARIATION_START:(", "MOVE_NUMBER:1.", "SAN:d4", "VARIATION_END:)", "SAN:e5"),
+                tokenize("1. e4 $1 {best (by test)} (1. d4) e5"));
+    }
+
+    @Test
+    public void testResults() {
+        assertEquals(List.of("RESULT:1-0"), tokenize("1-0"));
+        assertEquals(List.of("RESULT:0-1"), tokenize("0-1"));
+        assertEquals(List.of("RESULT:1/2-1/2"), tokenize(" 1/2-1/2 "));
+        assertEquals(List.of("SAN:e4", "RESULT:*"), tokenize("e4 *"));
+    }
+
+    @Test
+    public void testUnterminatedComment() {
+        assertEquals(List.of("SAN:e4", "COMMENT:{never closed"), tokenize("e4 {never closed"));
+    }
+
+    @Test
+    public void testParserSkipsNestedVariations() throws Exception {
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("nested", ".pgn");
+        java.nio.file.Files.writeString(file, "[Event \"Nested\"]\n\n" +
+                "1. e4 e5 (1... c5 2. Nf3 (2. c3 d5) d6) 2. Nf3 {develops} Nc6 $2 3. Bb5 1-0\n");
+
+        PGNParser parser = new PGNParser();
+        parser.parsePGNFile(file.toString());
+
+        assertEquals(1, parser.getGameList().size());
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5"), parser.getGameList().get(0));
+        java.nio.file.Files.delete(file);
+    }
+
+    @Test
+    public void testMoveTreeKeepsNestedVariations() {
+        MoveTree tree = MoveTree.parse("1. e4 e5 (1... c5 2. Nf3 (2. c3 d5) d6) (1... e6) 2. Nf3 {develops} Nc6 $2 3. Bb5 1-0");
+
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5"), tree.getMainLine());
+        assertEquals(3, tree.getVariationCount());
+
+        // Both black alternatives branch off after 1. e4
+        MoveTree.Node e4 = tree.getRoot().getChildren().get(0);
+        assertEquals(List.of("e5", "c5", "e6"), e4.getChildren().stream().map(MoveTree.Node::getSan).collect(Collectors.toList()));
+
+        // The nested variation replaces 2. Nf3 inside the Sicilian line
+        MoveTree.Node c5 = e4.getChildren().get(1);
+        MoveTree.Node c3 = c5.getChildren().get(1);
+        assertEquals("2. c3", c3.toString());
+        assertEquals("d5", c3.getChildren().get(0).getSan());
+        assertEquals("d6", c5.getChildren().get(0).getChildren().get(0).getSan());
+    }
+
+    @Test
+    public void testParserKeepsMoveTreeWhenAsked() throws Exception {
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("nested", ".pgn");
+        java.nio.file.Files.writeString(file, "[Event \"Nested\"]\n\n" +
+                "1. d4 (1. e4 e5 (1... c5)) 1... d5 2. c4 *\n");
+
+        PGNParser parser = new PGNParser();
+        parser.setKeepVariations(true);
+        try (java.util.stream.Stream<ParsedGame> games = parser.games(file)) {
+            ParsedGame game = games.findFirst().orElseThrow();
+            assertEquals(game.getMoves(), game.getMoveTree().getMainLine());
+            assertEquals(2, game.getMoveTree().getVariationCount());
+        }
+        java.nio.file.Files.delete(file);
+    }
+}
@@ -0,0 +1,463 @@
+package Parser;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the PGNParser class.
+ */
+public class PGNParserTest {
+
+    private static final String TWO_GAMES = "[Event \"First\"]\n" +
+            "[Result \"1-0\"]\n\n" +
+            "1. e4 e5 2. Nf3 Nc6 3. Bb5 1-0\n\n" +
+            "[Event \"Broken\"]\n" +
+            "[Result \"*\"]\n\n" +
+            "1. d4 2. c4 e6 *\n\n" +
+            "[Event \"Second\"]\n" +
+            "[Result \"0-1\"]\n\n" +
+            "1. d4 d5 2. c4 dxc4 0-1\n";
+
+    private Path writePgn(String content) throws Exception {
+        Path file = Files.createTempFile("parser", ".pgn");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    public void testStreamMatchesEagerParsing() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+
+        PGNParser eager = new PGNParser();
+        eager.parsePGNFile(file.toString());
+
+        List<List<String>> streamed;
+        try (Stream<ParsedGame> games = new PGNParser().games(file)) {
+            streamed = games.map(ParsedGame::getMoves).collect(Collectors.toList());
+        }
+
+        assertEquals(eager.getGameList(), streamed);
+        Files.delete(file);
+    }
+
+    @Test
+    public void testStreamKeepsFileGameNumbers() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+
+        try (Stream<ParsedGame> games = new PGNParser().games(file)) {
+            Iterator<ParsedGame> iterator = games.iterator();
+
+            ParsedGame first = iterator.next();
+            assertEquals(1, first.getGameNumber());
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5"), first.getMoves());
+
+            // The broken second game is omitted but still counted
+            ParsedGame second = iterator.next();
+            assertEquals(3, second.getGameNumber());
+            assertFalse(iterator.hasNext());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testParallelParsingKeepsFileOrder() throws Exception {
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            corpus.append(TWO_GAMES).append("\n");
+        }
+        Path file = writePgn(corpus.toString());
+
+        PGNParser sequential = new PGNParser();
+        sequential.parsePGNFile(file.toString());
+        PGNParser parallel = new PGNParser();
+        parallel.parsePGNFileParallel(file.toString(), 7);
+
+        assertEquals(100, parallel.getGameList().size());
+        assertEquals(sequential.getGameList(), parallel.getGameList());
+
+        // Game numbers count the omitted games of earlier ranges too
+        List<ParsedGame> games = new PGNParser().parseGamesParallel(file, 7);
+        assertEquals(150, games.get(games.size() - 1).getGameNumber());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSplitterAlignsToGameStarts() throws Exception {
+        Path file = writePgn(TWO_GAMES + TWO_GAMES);
+        String content = Files.readString(file);
+
+        long[] boundaries = PGNFileSplitter.split(file, 5);
+
+        assertEquals(0, boundaries[0]);
+        assertEquals(content.length(), boundaries[boundaries.length - 1]);
+        for (int i = 1; i < boundaries.length - 1; i++) {
+            assertTrue(content.startsWith("[Event", (int) boundaries[i]));
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testHeadersAreKeptPerGame() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+
+        PGNParser parser = new PGNParser();
+        parser.parsePGNFile(file.toString());
+
+        List<GameHeaders> headers = parser.getHeaderList();
+        assertEquals(parser.getGameList().size(), headers.size());
+        assertEquals("First", headers.get(0).get(PGNTag.EVENT));
+        assertEquals("1-0", headers.get(0).get("Result"));
+        assertEquals("Second", headers.get(1).get(PGNTag.EVENT));
+        assertNull(headers.get(1).get(PGNTag.WHITE));
+        assertEquals(2, headers.get(1).size());
+        assertEquals("Event", headers.get(1).tagName(0));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testTagsBeyondTheRegistryKeepTheirNames() throws Exception {
+        // Enough junk tag names to fill the registry, then one more tag that finds it full
+        StringBuilder content = new StringBuilder("[Event \"Junk\"]\n");
+        for (int n = 0; n < PGNTag.MAX_TAGS; n++) {
+            content.append("[Junk").append(n).append(" \"").append(n).append("\"]\n");
+        }
+        content.append("[AfterJunk \"last\"]\n\n1. e4 e5 1-0\n\n[Event \"Next\"]\n[AfterJunk \"again\"]\n\n1. d4 d5 1-0\n");
+        Path file = writePgn(content.toString());
+
+        PGNParser parser = new PGNParser();
+        parser.parsePGNFile(file.toString());
+        GameHeaders junk = parser.getHeaderList().get(0);
+        int last = PGNTag.MAX_TAGS - 1;
+
+        assertEquals(-1, PGNTag.find("AfterJunk"));
+        assertEquals(PGNTag.MAX_TAGS + 2, junk.size());
+        assertEquals("Junk", junk.get(PGNTag.EVENT));
+        assertEquals(String.valueOf(last), junk.get("Junk" + last));
+        assertEquals("Junk" + last, junk.tagName(last + 1));
+        assertEquals("last", junk.get("AfterJunk"));
+        assertEquals("AfterJunk", junk.tagName(junk.size() - 1));
+        assertEquals("again", parser.getHeaderList().get(1).get("AfterJunk"));
+        assertEquals(List.of("d4", "d5"), parser.getGameList().get(1));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testHeaderValuesAreInterned() {
+        GameHeaders.Builder builder = new GameHeaders.Builder();
+        GameHeaders first = builder.add("Site", new String("Tbilisi GEO")).add("WhiteFideId", "13601520").build();
+        GameHeaders second = builder.add("Site", new String("Tbilisi GEO")).build();
+
+        assertSame(first.get(PGNTag.SITE), second.get(PGNTag.SITE));
+        assertEquals("13601520", first.get("WhiteFideId"));
+        assertNull(second.get("WhiteFideId"));
+    }
+
+    @Test
+    public void testHeaderFilterSkipsRejectedGames() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+
+        PGNParser parser = new PGNParser();
+        parser.setHeaderFilter(HeaderFilters.tagEquals("Event", "Second"));
+        parser.parsePGNFile(file.toString());
+
+        assertEquals(List.of(List.of("d4", "d5", "c4", "dxc4")), parser.getGameList());
+
+        // Skipped games still count towards the game numbers
+        try (Stream<ParsedGame> games = parser.games(file)) {
+            assertEquals(List.of(3), games.map(ParsedGame::getGameNumber).collect(Collectors.toList()));
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testHeaderFilters() {
+        GameHeaders headers = new GameHeaders.Builder()
+                .add("Date", "2015.02.20")
+                .add("WhiteElo", "2696")
+                .add("BlackElo", "")
+                .build();
+
+        assertTrue(HeaderFilters.atLeast("WhiteElo", 2400).test(headers));
+        assertFalse(HeaderFilters.atLeast("WhiteElo", 2700).test(headers));
+        assertFalse(HeaderFilters.atLeast("BlackElo", 0).test(headers));
+        assertTrue(HeaderFilters.dateBetween("2015.01.01", "2015.12.31").test(headers));
+        assertFalse(HeaderFilters.dateBetween("2016.01.01", "2016.12.31").test(headers));
+    }
+
+    @Test
+    public void testIndexGivesRandomAccessToGames() throws Exception {
+        Path file = writePgn(TWO_GAMES + "\n" + TWO_GAMES);
+
+        PGNParser parser = new PGNParser();
+        parser.setIndexWriting(true);
+        parser.parsePGNFileMapped(file.toString());
+        assertTrue(Files.exists(PGNIndex.sidecarPath(file)));
+
+        PGNIndex index = parser.loadIndex(file);
+        assertEquals(6, index.size());
+        assertTrue(index.isCurrent(file));
+
+        ParsedGame game = parser.readGame(file, 6);
+        assertEquals(6, game.getGameNumber());
+        assertEquals("Second", game.getHeaders().get(PGNTag.EVENT));
+        assertEquals(List.of("d4", "d5", "c4", "dxc4"), game.getMoves());
+
+        // Game #2 is inconsistent and omitted, just like in a full parse
+        assertNull(parser.readGame(file, 2));
+        assertNull(parser.readGame(file, 7));
+
+        Files.delete(PGNIndex.sidecarPath(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testOnlyBlackContinuationRepeatsMoveNumber() throws Exception {
+        Path file = writePgn("[Event \"Continued\"]\n\n1. e4 e5 2. Nf3 {develops} 2... Nc6 3. Bb5 1-0\n\n" +
+                "[Event \"Repeated\"]\n\n1. e4 e5 2. Nf3 2. Nc6 3. Bb5 1-0\n");
+        PGNParser parser = new PGNParser();
+        parser.parsePGNFile(file.toString());
+
+        // "2..." continues white's 2nd move, a second "2." is an inconsistency and the game is omitted
+        assertEquals(1, parser.getGameList().size());
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5"), parser.getGameList().get(0));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testIndexIsExtendedWhenGamesAreAppended() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+        PGNParser parser = new PGNParser();
+        assertEquals(3, parser.loadIndex(file).size());
+
+        Files.writeString(file, "\n[Event \"Third\"]\n\n1. c4 e5 1/2-1/2\n", java.nio.file.StandardOpenOption.APPEND);
+        // Make sure the modification time differs even on coarse file systems
+        Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertEquals(4, parser.loadIndex(file).size());
+        assertEquals(List.of("c4", "e5"), parser.readGame(file, 4).getMoves());
+        assertEquals("Second", parser.readGame(file, 3).getHeaders().get(PGNTag.EVENT));
+
+        Files.delete(PGNIndex.sidecarPath(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testIndexIsStaleWhenGamesAreAppendedWithinTheSameTimestamp() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+        PGNParser parser = new PGNParser();
+        PGNIndex index = parser.loadIndex(file);
+        java.nio.file.attribute.FileTime indexed = Files.getLastModifiedTime(file);
+
+        // An append that does not move the modification time, as on a coarse file system
+        Files.writeString(file, "\n[Event \"Third\"]\n\n1. c4 e5 1/2-1/2\n", java.nio.file.StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(file, indexed);
+
+        assertFalse(index.isCurrent(file));
+        assertEquals(4, parser.loadIndex(file).size());
+        assertEquals(List.of("c4", "e5"), parser.readGame(file, 4).getMoves());
+
+        Files.delete(PGNIndex.sidecarPath(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testIndexCompletedBeforeAnAppendIsNotCurrent() throws Exception {
+        Path file = writePgn(TWO_GAMES);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long indexedEnd = Files.size(file);
+
+        // The file grows after it was read but before the index is completed
+        Files.writeString(file, "\n[Event \"Third\"]\n\n1. c4 e5 1/2-1/2\n", java.nio.file.StandardOpenOption.APPEND);
+        PGNIndex index = new PGNIndex();
+        index.add(0, 0);
+        index.complete(indexedEnd, lastModified);
+
+        assertEquals(indexedEnd, index.getFileSize());
+        assertFalse(index.isCurrent(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testParseAppendedOnlyCommitsFinishedGames() throws Exception {
+        Path file = writePgn("[Event \"Live\"]\n\n1. e4 e5 2. Nf3");
+        PGNParser parser = new PGNParser();
+        TailPosition position = new TailPosition();
+        List<ParsedGame> games = new java.util.ArrayList<>();
+
+        // The game has not ended yet, nothing is committed
+        parser.parseAppended(file, position, games::add);
+        assertTrue(games.isEmpty());
+        assertEquals(0, position.getOffset());
+
+        Files.writeString(file, " Nc6 3. Bb5 1-0\n\n[Event \"Next\"]\n\n1. d4", java.nio.file.StandardOpenOption.APPEND);
+        parser.parseAppended(file, position, games::add);
+        assertEquals(1, games.size());
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5"), games.get(0).getMoves());
+
+        Files.writeString(file, " d5 0-1\n", java.nio.file.StandardOpenOption.APPEND);
+        parser.parseAppended(file, position, games::add);
+        assertEquals(2, games.size());
+        assertEquals(2, games.get(1).getGameNumber());
+        assertEquals("Next", games.get(1).getHeaders().get(PGNTag.EVENT));
+        assertEquals(Files.size(file), position.getOffset());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testDuplicateGamesAreSkipped() throws Exception {
+        // The copy has a different event, check marks and annotations, the moves are the same
+        String copy = "[Event \"Copy\"]\n[Result \"1-0\"]\n\n1. e4! e5 2. Nf3 Nc6?! 3. Bb5+ 1-0\n\n";
+        Path file = writePgn(TWO_GAMES + "\n" + copy + TWO_GAMES);
+
+        PGNParser parser = new PGNParser();
+        GameDeduplicator deduplicator = GameDeduplicator.exact();
+        parser.setDeduplicator(deduplicator);
+        parser.parsePGNFile(file.toString());
+        assertEquals(2, parser.getGameList().size());
+        assertEquals("First", parser.getHeaderList().get(0).get(PGNTag.EVENT));
+        assertEquals(3, deduplicator.getDuplicateCount());
+
+        // The parallel parser keeps the same copies
+        PGNParser parallel = new PGNParser();
+        parallel.setDeduplicator(GameDeduplicator.exact());
+        List<ParsedGame> games = parallel.parseGamesParallel(file, 3);
+        assertEquals(List.of(1, 3), games.stream().map(ParsedGame::getGameNumber).collect(Collectors.toList()));
+
+        // With the Event tag in the fingerprint the copy is a different game
+        PGNParser byEvent = new PGNParser();
+        byEvent.setDeduplicator(GameDeduplicator.bloom(1000, 0.001, PGNTag.EVENT));
+        byEvent.parsePGNFile(file.toString());
+        assertEquals(3, byEvent.getGameList().size());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testHeaderScanFindsTheSameGames() throws Exception {
+        Path file = writePgn(TWO_GAMES + "\n" + TWO_GAMES);
+        PGNParser parser = new PGNParser();
+
+        // The broken games are counted too, like the parser's game numbers
+        List<GameHeaders> headers = new java.util.ArrayList<>();
+        assertEquals(6, parser.scanHeaders(file, headers::add));
+        assertEquals(List.of("First", "Broken", "Second", "First", "Broken", "Second"),
+                headers.stream().map(h -> h.get(PGNTag.EVENT)).collect(Collectors.toList()));
+        assertEquals("0-1", headers.get(2).get(PGNTag.RESULT));
+        assertTrue(parser.getGameList().isEmpty());
+
+        java.util.Map<String, Long> results = new java.util.concurrent.ConcurrentHashMap<>();
+        parser.setHeaderFilter(HeaderFilters.tagEquals("Event", "Second").negate());
+        assertEquals(6, parser.scanHeadersParallel(file, 3, h -> results.merge(h.get(PGNTag.RESULT), 1L, Long::sum)));
+        assertEquals(java.util.Map.of("1-0", 2L, "*", 2L), results);
+        Files.delete(file);
+    }
+
+    /**
+     * Writes the content as BGZF: one gzip member per block, each recording its size in a "BC" extra field.
+     */
+    private Path writeBgzf(String content, int blockSize) throws Exception {
+        Path file = Files.createTempFile("parser", ".pgn.bgz");
+        byte[] bytes = content.getBytes();
+        try (java.io.OutputStream out = Files.newOutputStream(file)) {
+            for (int offset = 0; offset < bytes.length; offset += blockSize) {
+                int length = Math.min(blockSize, bytes.length - offset);
+                java.util.zip.Deflater deflater = new java.util.zip.Deflater(6, true);
+                deflater.setInput(bytes, offset, length);
+                deflater.finish();
+                byte[] compressed = new byte[length + 64];
+                int compressedLength = deflater.deflate(compressed);
+                deflater.end();
+                java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                crc.update(bytes, offset, length);
+
+                int memberSize = compressedLength + 25;
+                out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                        (byte) memberSize, (byte) (memberSize >> 8)});
+                out.write(compressed, 0, compressedLength);
+                for (long value : new long[]{crc.getValue(), length}) {
+                    for (int i = 0; i < 4; i++) {
+                        out.write((int) (value >> (8 * i)));
+                    }
+                }
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testCompressedFilesParseLikePlainOnes() throws Exception {
+        Path plain = writePgn(TWO_GAMES + "\n" + TWO_GAMES);
+        PGNParser expected = new PGNParser();
+        expected.parsePGNFile(plain.toString());
+
+        // Two gzip members, as concatenating two .gz files gives
+        Path gzip = Files.createTempFile("parser", ".pgn.gz");
+        for (String part : new String[]{TWO_GAMES + "\n", TWO_GAMES}) {
+            try (java.util.zip.GZIPOutputStream out = new java.util.zip.GZIPOutputStream(
+                    Files.newOutputStream(gzip, java.nio.file.StandardOpenOption.APPEND))) {
+                out.write(part.getBytes());
+            }
+        }
+        Path bgzf = writeBgzf(TWO_GAMES + "\n" + TWO_GAMES, 50);
+
+        assertNull(new GzipCodec().splitBatches(gzip));
+        long[] batches = new GzipCodec().splitBatches(bgzf);
+        assertEquals(0, batches[0]);
+        assertEquals(Files.size(bgzf), batches[batches.length - 1]);
+
+        for (Path file : List.of(gzip, bgzf)) {
+            PGNParser parser = new PGNParser();
+            parser.parsePGNFile(file.toString());
+            assertEquals(expected.getGameList(), parser.getGameList());
+
+            List<List<String>> parallel = new PGNParser().parseGamesParallel(file, 4).stream()
+                    .map(ParsedGame::getMoves).collect(Collectors.toList());
+            assertEquals(expected.getGameList(), parallel);
+
+            try (Stream<ParsedGame> games = new PGNParser().games(file)) {
+                assertEquals(expected.getGameList(), games.map(ParsedGame::getMoves).collect(Collectors.toList()));
+            }
+            Files.delete(file);
+        }
+        Files.delete(plain);
+    }
+
+    @Test
+    public void testBgzfBatchesComeOutInFileOrder() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int n = 1; n <= 40; n++) {
+            content.append("[Event \"Game ").append(n).append("\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0\n\n");
+        }
+        Path bgzf = writeBgzf(content.toString(), 50);
+
+        // Small batches so the file is inflated in many more batches than the stream holds at once
+        GzipCodec codec = new GzipCodec(100);
+        assertTrue(codec.splitBatches(bgzf).length > 16);
+        try (java.io.InputStream in = codec.open(bgzf, 4)) {
+            assertEquals(content.toString(), new String(in.readAllBytes()));
+        }
+
+        // Only this file goes through the small batches
+        PGNCodecs.register(new GzipCodec(100) {
+            @Override
+            public boolean accepts(Path path) {
+                return path.equals(bgzf);
+            }
+        });
+        List<ParsedGame> games = new PGNParser().parseGamesParallel(bgzf, 4);
+        assertEquals(40, games.size());
+        for (int n = 1; n <= 40; n++) {
+            assertEquals(n, games.get(n - 1).getGameNumber());
+            assertEquals("Game " + n, games.get(n - 1).getHeaders().get(PGNTag.EVENT));
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6"), games.get(n - 1).getMoves());
+        }
+        Files.delete(bgzf);
+    }
+}
@@ -0,0 +1,95 @@
+package Bonuse;
+
+import Controller.GameMasterController;
+import Model.ChessBoard;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the PGNWatcher class.
+ */
+public class PGNWatcherTest {
+
+    private static final String GAME = "[Event \"Live\"]\n\n1. e4 e5 2. Nf3 Nc6 1-0\n\n";
+
+    private Path writePgn(Path directory, String name) throws Exception {
+        Path file = directory.resolve(name);
+        Files.writeString(file, GAME);
+        return file;
+    }
+
+    @Test
+    public void testTwoFilesInOneDirectoryAreBothWatched() throws Exception {
+        Path directory = Files.createTempDirectory("watcher");
+        Path first = writePgn(directory, "first.pgn");
+        Path second = writePgn(directory, "second.pgn");
+        Path other = writePgn(directory, "other.pgn");
+
+        PGNWatcher watcher = new PGNWatcher(new GameMasterController(new ChessBoard(), true));
+        Thread thread = new Thread(watcher);
+        try {
+            watcher.watch(first);
+            watcher.watch(second);
+            assertTrue(watcher.isWatched(first));
+            assertTrue(watcher.isWatched(second));
+            assertFalse(watcher.isWatched(other));
+            assertEquals(Files.size(first), watcher.getPosition(first).getOffset());
+            assertEquals(Files.size(second), watcher.getPosition(second).getOffset());
+
+            // Games appended to the first file are still ingested after the second was watched
+            thread.start();
+            Files.writeString(first, GAME, StandardOpenOption.APPEND);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (watcher.getPosition(first).getOffset() < Files.size(first) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            watcher.close();
+            thread.join();
+        }
+        assertEquals(Files.size(first), watcher.getPosition(first).getOffset());
+        assertNull(watcher.getPosition(other));
+
+        for (Path file : new Path[]{first, second, other}) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testFolderAndFileInItAreWatchedTogether() throws Exception {
+        Path directory = Files.createTempDirectory("watcher");
+        Path first = writePgn(directory, "first.pgn");
+        Path second = writePgn(directory, "second.pgn");
+        Path notes = directory.resolve("notes.txt");
+        Files.writeString(notes, "not a game");
+
+        // Watching a file does not narrow the folder it is in down to that file
+        try (PGNWatcher watcher = new PGNWatcher(new GameMasterController(new ChessBoard(), true))) {
+            watcher.watch(directory);
+            watcher.watch(first);
+            assertTrue(watcher.isWatched(second));
+            assertTrue(watcher.isWatched(directory.resolve("dropped.pgn")));
+            assertFalse(watcher.isWatched(notes));
+        }
+
+        // Nor the other way around: the file stays watched, the folder is added
+        try (PGNWatcher watcher = new PGNWatcher(new GameMasterController(new ChessBoard(), true))) {
+            watcher.watch(first);
+            assertFalse(watcher.isWatched(second));
+            watcher.watch(directory);
+            assertTrue(watcher.isWatched(first));
+            assertTrue(watcher.isWatched(second));
+        }
+
+        for (Path file : new Path[]{first, second, notes}) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+}
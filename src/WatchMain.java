@@ -0,0 +1,22 @@
+import Bonuse.PGNWatcher;
+import Controller.GameMasterController;
+import Model.ChessBoard;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class WatchMain {
+    public static void main(String[] args) throws IOException {
+        // live mode: instead of re-running Main/ThreadMain, keep watching a growing broadcast file or a drop folder
+        // (pass paths as arguments) and evaluate every game as soon as its result has been written
+
+        String[] paths = args.length > 0 ? args : new String[]{"src/testPgns"};
+
+        try (PGNWatcher watcher = new PGNWatcher(new GameMasterController(new ChessBoard(), true))) {
+            for (String path : paths) {
+                watcher.watch(Path.of(path));
+            }
+            watcher.run();
+        }
+    }
+}